@@ -0,0 +1,104 @@
+package com.github.zalesskyi.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Корпуса текстов для бенчмарков.
+ *
+ * По умолчанию тексты генерируются (детерминированно) из словаря InMemoryMorphology:
+ * абзацы из предложений разной длины, частоты слов убывают примерно по закону Ципфа,
+ * около четверти слов - стоп-слова. Если задано свойство bench.corpusDir,
+ * тексты читаются из файлов small.txt, medium.txt, book.txt этого каталога.
+ */
+public enum Corpus {
+    SMALL(2 * 1024, "small.txt"),
+    MEDIUM(64 * 1024, "medium.txt"),
+    BOOK(2 * 1024 * 1024, "book.txt");
+
+    private static final long SEED = 20180528;
+
+    private final int mChars;
+    private final String mFileName;
+    private String mText;
+
+    Corpus(int chars, String fileName) {
+        mChars = chars;
+        mFileName = fileName;
+    }
+
+    /**
+     * @return текст корпуса
+     */
+    public synchronized String text() {
+        if (mText == null) {
+            String dir = System.getProperty("bench.corpusDir");
+            mText = dir != null ? read(Paths.get(dir, mFileName)) : generate(mChars);
+        }
+        return mText;
+    }
+
+    /**
+     * @return слова текста в нижнем регистре без знаков пунктуации
+     */
+    public String[] words() {
+        List<String> words = new ArrayList<>();
+        for (String token : text().toLowerCase().split("[^а-яёa-z0-9-]+")) {
+            if (!token.isEmpty()) {
+                words.add(token);
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static String read(Path path) {
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException exc) {
+            throw new IllegalStateException("Can't read corpus " + path, exc);
+        }
+    }
+
+    private static String generate(int chars) {
+        Random random = new Random(SEED);
+        String[] words = InMemoryMorphology.contentWords();
+        String[] stopWords = InMemoryMorphology.stopWords();
+
+        StringBuilder text = new StringBuilder(chars + 256);
+        while (text.length() < chars) {
+            int sentences = 1 + random.nextInt(8);
+            for (int s = 0; s < sentences; s++) {
+                int length = 4 + random.nextInt(14);
+                for (int w = 0; w < length; w++) {
+                    String word = random.nextInt(4) == 0
+                            ? stopWords[random.nextInt(stopWords.length)]
+                            : words[zipf(random, words.length)];
+                    if (w == 0) {
+                        word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                    } else {
+                        text.append(' ');
+                    }
+                    text.append(word);
+                    if (w < length - 1 && random.nextInt(10) == 0) {
+                        text.append(',');
+                    }
+                }
+                text.append(s < sentences - 1 ? (random.nextInt(6) == 0 ? "! " : ". ") : ".\n");
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return индекс слова: частые слова (с малыми индексами) выбираются чаще
+     */
+    private static int zipf(Random random, int size) {
+        return (int) Math.floor(Math.pow(size + 1, random.nextDouble())) - 1;
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.zalesskyi.benchmarks;
+
+import com.github.zalesskyi.base.summarization.Dictionary;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Этапы обработки словаря текста: заполнение (addWord), стемминг, сортировка,
+ * выбор опорных слов и адресов ключевых предложений.
+ *
+ * Этапы, изменяющие словарь, получают новый словарь перед каждым вызовом (Level.Invocation),
+ * поэтому для корпуса SMALL их время следует сравнивать только между собой.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-DtextAbstracting.logFile=", "-DtextAbstracting.logConsole=false"})
+@State(Scope.Benchmark)
+public class DictionaryBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "BOOK"})
+    public Corpus corpus;
+
+    private String[] mWords;
+    private int[] mParagraphs;
+    private int[] mSentences;
+    private int mParagraphsCount;
+    private int mWordsCount;
+
+    private Dictionary mSorted;                 // сжатый и отсортированный словарь (для неизменяющих этапов)
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Morphology.install();
+        split(corpus.text());
+        mSorted = build();
+        mSorted.compressAndStem();
+        mSorted.sort();
+    }
+
+    /**
+     * Словарь для этапов, изменяющих словарь.
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+        Dictionary mDictionary;
+
+        @Setup(Level.Invocation)
+        public void setUp(DictionaryBenchmark benchmark) {
+            mDictionary = benchmark.build();
+        }
+    }
+
+    /**
+     * Сжатый и отсортированный словарь для выбора опорных слов (результат кэшируется в словаре).
+     */
+    @State(Scope.Thread)
+    public static class Sorted {
+        Dictionary mDictionary;
+
+        @Setup(Level.Invocation)
+        public void setUp(DictionaryBenchmark benchmark) {
+            mDictionary = benchmark.build();
+            mDictionary.compressAndStem();
+            mDictionary.sort();
+        }
+    }
+
+    @Benchmark
+    public Dictionary addWord() {
+        return build();
+    }
+
+    @Benchmark
+    public Dictionary stemming(Fresh fresh) {
+        fresh.mDictionary.stemming();
+        return fresh.mDictionary;
+    }
+
+    @Benchmark
+    public Dictionary compressAndStem(Fresh fresh) {
+        fresh.mDictionary.compressAndStem();
+        return fresh.mDictionary;
+    }
+
+    @Benchmark
+    public Dictionary sort() {
+        mSorted.sort();
+        return mSorted;
+    }
+
+    @Benchmark
+    public Object mainBasicWords(Sorted sorted) {
+        return sorted.mDictionary.getMainBasicWords();
+    }
+
+    @Benchmark
+    public Map<Integer, Set<Integer>> keySentencesAddresses() {
+        return mSorted.getKeySentencesAddresses();
+    }
+
+    Dictionary build() {
+        Dictionary dictionary = new Dictionary(mParagraphsCount, mWordsCount);
+        for (int i = 0; i < mWords.length; i++) {
+            dictionary.addWord(mWords[i], mParagraphs[i], mSentences[i]);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Простое разбиение текста на абзацы, предложения и слова (без стоп-слов),
+     * чтобы заполнение словаря измерялось отдельно от разбора текста.
+     */
+    private void split(String text) {
+        Set<String> stopWords = new HashSet<>(Arrays.asList(InMemoryMorphology.stopWords()));
+        List<String> words = new ArrayList<>();
+        List<int[]> addresses = new ArrayList<>();
+        String[] paragraphs = text.split("\n");
+        for (int p = 0; p < paragraphs.length; p++) {
+            String[] sentences = paragraphs[p].split("[.!?] ");
+            for (int s = 0; s < sentences.length; s++) {
+                for (String token : sentences[s].toLowerCase().split("[^а-яёa-z0-9-]+")) {
+                    mWordsCount += token.isEmpty() ? 0 : 1;
+                    if (!token.isEmpty() && !stopWords.contains(token)) {
+                        words.add(token);
+                        addresses.add(new int[]{p, s});
+                    }
+                }
+            }
+        }
+        mParagraphsCount = paragraphs.length;
+        mWords = words.toArray(new String[0]);
+        mParagraphs = new int[mWords.length];
+        mSentences = new int[mWords.length];
+        for (int i = 0; i < mWords.length; i++) {
+            mParagraphs[i] = addresses.get(i)[0];
+            mSentences[i] = addresses.get(i)[1];
+        }
+    }
+}
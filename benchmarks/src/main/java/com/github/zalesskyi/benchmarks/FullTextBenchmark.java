@@ -0,0 +1,51 @@
+package com.github.zalesskyi.benchmarks;
+
+import com.github.zalesskyi.base.summarization.Dictionary;
+import com.github.zalesskyi.base.summarization.FullText;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реферирование текста целиком: разбор текста (FullText) и все этапы обработки словаря,
+ * как в ProcessThread.summarize. Отдельно измеряется только разбор текста.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-DtextAbstracting.logFile=", "-DtextAbstracting.logConsole=false"})
+@State(Scope.Benchmark)
+public class FullTextBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "BOOK"})
+    public Corpus corpus;
+
+    private String mText;
+
+    @Setup
+    public void setUp() throws Exception {
+        Morphology.install();
+        mText = corpus.text();
+    }
+
+    @Benchmark
+    public Dictionary analyse() {
+        return new FullText(mText).getAllWords();
+    }
+
+    @Benchmark
+    public String summarize(Blackhole blackhole) {
+        FullText fText = new FullText(mText);
+        Dictionary dictionary = fText.getAllWords();
+        dictionary.compressAndStem();
+        dictionary.sort();
+        blackhole.consume(dictionary.getMainBasicWords());
+        blackhole.consume(dictionary.getSecondaryBasicWords());
+        Map<Integer, Set<Integer>> addresses = dictionary.getKeySentencesAddresses();
+        return fText.getKeySentences(addresses);
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.zalesskyi.benchmarks;
+
+import com.github.zalesskyi.base.database.DbSchema;
+import com.github.zalesskyi.base.database.MorphologyRepository;
+
+import java.util.*;
+
+/**
+ * Морфологические данные в памяти вместо БД.
+ *
+ * Таблицы частей речи заполняются формами слов, построенными из небольшого набора основ
+ * и окончаний, таблицы стоп-слов - частыми служебными словами. Запросы выполняются
+ * по хэш-таблицам, поэтому бенчмарки измеряют реферирование, а не БД.
+ */
+public class InMemoryMorphology implements MorphologyRepository {
+    private static final String[] NOUN_STEMS = {"дом", "город", "стол", "книг", "работ", "систем", "текст",
+            "человек", "врем", "дел", "жизн", "мест", "вопрос", "сторон", "стран", "мир", "случа", "голов",
+            "сил", "вид", "образ", "закон", "машин", "язык", "слов", "предложени", "абзац", "смысл", "документ",
+            "автор", "стать", "метод", "алгоритм", "реферат", "процесс", "результат", "задач", "проблем"};
+    private static final String[] NOUN_ENDINGS = {"", "а", "ы", "у", "ом", "ами", "ах", "е", "ой", "ов", "и", "ям"};
+    private static final String[] ADJECTIVE_STEMS = {"нов", "больш", "важн", "основн", "русск", "сложн",
+            "простой", "ключев", "главн", "текстов", "полн", "крат", "точн", "автоматическ"};
+    private static final String[] ADJECTIVE_ENDINGS = {"ый", "ая", "ое", "ые", "ого", "ой", "ому", "ым", "ых", "ую"};
+    private static final String[] VERB_STEMS = {"дела", "работа", "чита", "писа", "дума", "понима", "выделя",
+            "сокраща", "определя", "использова", "получа", "рассматрива"};
+    private static final String[] VERB_ENDINGS = {"ть", "ет", "ют", "л", "ла", "ли", "ешь", "ем"};
+    private static final String[] PARTICIPLE_STEMS = {"читающ", "работающ", "выделенн", "полученн", "написанн",
+            "определяющ"};
+    private static final String[] PARTICIPLE_ENDINGS = {"ий", "ая", "ее", "ие", "его", "ей", "ими", "ых"};
+    private static final String[] UNKNOWN_WORDS = {"java", "http", "json", "postgresql", "2018", "xml", "пушкин",
+            "москва", "интернет", "api"};
+
+    private static final Map<String, String[]> STOP_WORDS = new LinkedHashMap<>();
+
+    static {
+        STOP_WORDS.put(DbSchema.PrepositionsTable.NAME, new String[]{"в", "на", "с", "по", "к", "из", "за", "от",
+                "до", "о", "для", "при", "без", "через"});
+        STOP_WORDS.put(DbSchema.ConjunctionsTable.NAME, new String[]{"и", "а", "но", "или", "что", "чтобы", "если",
+                "когда", "как"});
+        STOP_WORDS.put(DbSchema.ParticlesTable.NAME, new String[]{"не", "ни", "же", "ли", "бы", "только", "даже"});
+        STOP_WORDS.put(DbSchema.PronounsTable.NAME, new String[]{"он", "она", "оно", "они", "мы", "вы", "это",
+                "этот", "который", "его", "их", "себя"});
+        STOP_WORDS.put(DbSchema.AdverbsTable.NAME, new String[]{"так", "уже", "очень", "здесь", "теперь", "всегда"});
+        STOP_WORDS.put(DbSchema.NumeralsTable.NAME, new String[]{"один", "два", "три", "первый", "второй"});
+        STOP_WORDS.put(DbSchema.IntroductorsTable.NAME, new String[]{"в общем", "к тому же", "то есть",
+                "во-первых", "наконец"});
+    }
+
+    private final Map<String, Set<String>> mTables = new HashMap<>();
+
+    public InMemoryMorphology() {
+        mTables.put(DbSchema.NounsTable.NAME, forms(NOUN_STEMS, NOUN_ENDINGS));
+        mTables.put(DbSchema.AdjectivesTable.NAME, forms(ADJECTIVE_STEMS, ADJECTIVE_ENDINGS));
+        mTables.put(DbSchema.VerbsTable.NAME, forms(VERB_STEMS, VERB_ENDINGS));
+        mTables.put(DbSchema.ParticiplesTable.NAME, forms(PARTICIPLE_STEMS, PARTICIPLE_ENDINGS));
+        STOP_WORDS.forEach((table, words) -> mTables.put(table, new LinkedHashSet<>(Arrays.asList(words))));
+    }
+
+    /**
+     * @return все формы знаменательных слов (и слова, которых нет в таблицах) в случайном, но постоянном порядке
+     */
+    static String[] contentWords() {
+        List<String> words = new ArrayList<>();
+        words.addAll(forms(NOUN_STEMS, NOUN_ENDINGS));
+        words.addAll(forms(ADJECTIVE_STEMS, ADJECTIVE_ENDINGS));
+        words.addAll(forms(VERB_STEMS, VERB_ENDINGS));
+        words.addAll(forms(PARTICIPLE_STEMS, PARTICIPLE_ENDINGS));
+        words.addAll(Arrays.asList(UNKNOWN_WORDS));
+        Collections.shuffle(words, new Random(words.size()));
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * @return служебные слова всех таблиц стоп-слов
+     */
+    static String[] stopWords() {
+        List<String> words = new ArrayList<>();
+        STOP_WORDS.values().forEach(tableWords -> words.addAll(Arrays.asList(tableWords)));
+        return words.toArray(new String[0]);
+    }
+
+    @Override
+    public List<String> queryWords(String from) {
+        Set<String> table = mTables.get(from);
+        if (table == null) {
+            throw new UnsupportedOperationException("No table " + from);
+        }
+        return new ArrayList<>(table);
+    }
+
+    @Override
+    public Map<String, Set<String>> queryTablesContaining(Collection<String> words, String... tables) {
+        Map<String, Set<String>> result = new HashMap<>();
+        for (String table : tables) {
+            Set<String> tableWords = mTables.getOrDefault(table, Collections.emptySet());
+            for (String word : words) {
+                if (tableWords.contains(word)) {
+                    result.computeIfAbsent(word, w -> new HashSet<>()).add(table);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isTableContainsWord(String table, String word) {
+        return mTables.getOrDefault(table, Collections.emptySet()).contains(word);
+    }
+
+    @Override
+    public int getPlurality(String table, String word) {
+        if (!isTableContainsWord(table, word)) {
+            return -1;
+        }
+        return word.endsWith("ы") || word.endsWith("и") || word.endsWith("ов") || word.endsWith("ами") ? 1 : 0;
+    }
+
+    private static Set<String> forms(String[] stems, String[] endings) {
+        Set<String> forms = new LinkedHashSet<>();
+        for (String stem : stems) {
+            for (String ending : endings) {
+                forms.add(stem + ending);
+            }
+        }
+        return forms;
+    }
+}
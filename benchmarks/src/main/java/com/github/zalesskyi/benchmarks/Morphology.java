@@ -0,0 +1,25 @@
+package com.github.zalesskyi.benchmarks;
+
+import com.github.zalesskyi.base.database.MorphologyRepositories;
+import com.github.zalesskyi.base.summarization.MorphologyUtil;
+
+/**
+ * Подключение морфологических данных в памяти (InMemoryMorphology) вместо БД.
+ */
+final class Morphology {
+    private static boolean installed;
+
+    private Morphology() {
+    }
+
+    /**
+     * Установка хранилища в памяти и загрузка стоп-слов. Повторные вызовы ничего не делают.
+     */
+    static synchronized void install() throws Exception {
+        if (!installed) {
+            MorphologyRepositories.setDefault(new InMemoryMorphology());
+            MorphologyUtil.preloadStopWords();
+            installed = true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.zalesskyi.benchmarks;
+
+import com.github.zalesskyi.base.summarization.PartOfSpeechHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.LinkedHashSet;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стемминг и эвристики определения части речи (регулярные выражения PartOfSpeechHelper).
+ * Время - на одно слово, слова - различные слова корпуса.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-DtextAbstracting.logFile=", "-DtextAbstracting.logConsole=false"})
+@State(Scope.Benchmark)
+public class PartOfSpeechBenchmark {
+    private static final int WORDS = 512;
+
+    private String[] mWords;
+    private PartOfSpeechHelper mHelper;
+
+    @Setup
+    public void setUp() {
+        String[] distinct = new LinkedHashSet<>(Arrays.asList(Corpus.MEDIUM.words())).toArray(new String[0]);
+        mWords = new String[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            mWords[i] = distinct[i % distinct.length];
+        }
+        mHelper = new PartOfSpeechHelper();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void stem(Blackhole blackhole) {
+        for (String word : mWords) {
+            blackhole.consume(mHelper.stem(word));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void isNoun(Blackhole blackhole) {
+        for (String word : mWords) {
+            blackhole.consume(PartOfSpeechHelper.isNoun(word));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void isAdjective(Blackhole blackhole) {
+        for (String word : mWords) {
+            blackhole.consume(PartOfSpeechHelper.isAdjective(word));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void isVerb(Blackhole blackhole) {
+        for (String word : mWords) {
+            blackhole.consume(PartOfSpeechHelper.isVerb(word));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void isParticiple(Blackhole blackhole) {
+        for (String word : mWords) {
+            blackhole.consume(PartOfSpeechHelper.isParticiple(word));
+        }
+    }
+}
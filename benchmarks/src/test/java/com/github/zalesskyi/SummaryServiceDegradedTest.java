@@ -0,0 +1,55 @@
+package com.github.zalesskyi;
+
+import com.github.zalesskyi.base.database.MorphologyRepositories;
+import com.github.zalesskyi.benchmarks.InMemoryMorphology;
+import com.github.zalesskyi.model.Request;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Реферирование без словаря стоп-слов (таблицы стоп-слов не читаются): результат приблизительный,
+ * поэтому не кэшируется и отдается без ETag, а словарь не перечитывается при каждом запросе.
+ *
+ * Словарь стоп-слов - общий для всей JVM, поэтому тест рассчитан на то, что до него словарь не загружался.
+ */
+public class SummaryServiceDegradedTest {
+    private static final String TEXT = "Мама мыла раму. Папа читал газету в саду.\n"
+            + "Кот спал на окне. Утром шел дождь, и дети остались дома.";
+
+    @After
+    public void restoreRepository() {
+        MorphologyRepositories.setDefault(new InMemoryMorphology());
+    }
+
+    @Test
+    public void summaryWithoutStopWordsIsNotCachedOrTagged() throws Exception {
+        AtomicInteger stopWordsLoads = new AtomicInteger();
+        MorphologyRepositories.setDefault(new InMemoryMorphology() {
+            @Override
+            public List<String> queryWords(String from) {
+                stopWordsLoads.incrementAndGet();
+                throw new UnsupportedOperationException("Stop words table is not available: " + from);
+            }
+        });
+        SummaryService service = new SummaryService(new SummaryCache(1 << 20, 0));
+
+        for (int i = 0; i < 3; i++) {
+            Request request = new Request();
+            request.setSource(TEXT);
+            String key = SummaryCache.keyOf(request);
+            Summary summary = service.getSummary(request, key);
+
+            assertTrue("Summary without stop words is not marked degraded", summary.isDegraded());
+            assertNull(service.getCache().get(key));
+        }
+        assertEquals(0, service.getCache().size());
+        assertEquals("Stop words are reloaded on every request", 1, stopWordsLoads.get());
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.zalesskyi.base.database;
+
+import com.github.zalesskyi.Metrics;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Учет ложных срабатываний фильтров Блума (TableFilters) при проверке слова в таблице
+ * (MorphologyDbHelper.isTableContainsWord) на заменителе БД: в каждой таблице одно слово,
+ * но запрос по слову ничего не находит (слово удалено после построения фильтра).
+ */
+public class BloomFilterMetricsTest {
+    private static final String TABLE = DbSchema.NounsTable.NAME;
+    private static final String WORD = "дом";
+    private static final String[] OTHER_WORDS = {"кот", "лес", "река", "окно", "стол", "гора", "ёж", "снег"};
+    private static final long BUILD_TIMEOUT_MILLIS = 5_000;
+
+    private final LongAdder falsePositives = counter("db_bloom_filter_false_positives_total");
+    private final LongAdder passed = counter("db_bloom_filter_passed_total");
+    private final LongAdder rejected = counter("db_bloom_filter_rejected_total");
+
+    @Test
+    public void missWithoutFilterIsNotFalsePositive() throws Exception {
+        StandIn db = new StandIn();
+        db.queryError = new SQLException("Relation does not exist", "42P01");    // фильтры не строятся
+        MorphologyDbHelper dbHelper = db.dbHelper("bloom-no-filter");
+        long deadline = System.currentTimeMillis() + BUILD_TIMEOUT_MILLIS;
+        while (db.queries.get() < TableFilters.TABLES.length && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals("Filters are not built", TableFilters.TABLES.length, db.queries.get());
+        db.queryError = null;
+
+        long falsePositivesBefore = falsePositives.sum();
+        long passedBefore = passed.sum();
+        for (String word : OTHER_WORDS) {
+            assertFalse(word, dbHelper.isTableContainsWord(TABLE, word));
+        }
+        assertEquals(TableFilters.TABLES.length + OTHER_WORDS.length, db.queries.get());   // запрос на каждое слово
+        assertEquals(falsePositivesBefore, falsePositives.sum());
+        assertEquals(passedBefore, passed.sum());
+    }
+
+    @Test
+    public void missAfterFilterIsFalsePositive() throws Exception {
+        StandIn db = new StandIn();
+        MorphologyDbHelper dbHelper = db.dbHelper("bloom-filter");
+        long deadline = System.currentTimeMillis() + BUILD_TIMEOUT_MILLIS;
+        long rejectedBefore = rejected.sum();
+        while (rejected.sum() == rejectedBefore && System.currentTimeMillis() < deadline) {
+            for (String word : OTHER_WORDS) {
+                dbHelper.isTableContainsWord(TABLE, word);                  // пока фильтра нет - запрос в БД
+            }
+            Thread.sleep(20);
+        }
+        assertTrue("Filter is not built", rejected.sum() > rejectedBefore);
+
+        long falsePositivesBefore = falsePositives.sum();
+        int queriesBefore = db.queries.get();
+        assertFalse(dbHelper.isTableContainsWord(TABLE, WORD));
+        assertEquals(queriesBefore + 1, db.queries.get());
+        assertEquals(falsePositivesBefore + 1, falsePositives.sum());
+    }
+
+    private static LongAdder counter(String name) {
+        return Metrics.counter(name, "", Metrics.label("table", TABLE));    // та же серия, что у TableFilters
+    }
+
+    /**
+     * Заменитель сервера БД: в каждой таблице одно слово WORD, запрос по слову строк не возвращает.
+     */
+    private static final class StandIn {
+        private volatile SQLException queryError;
+        private final AtomicInteger queries = new AtomicInteger();
+
+        private MorphologyDbHelper dbHelper(String name) {
+            DataSource dataSource = proxy(DataSource.class, (instance, method, args) ->
+                    method.getName().equals("getConnection") ? connect() : defaultValue(method.getReturnType()));
+            Replica replica = new Replica(name, dataSource, this::connect, 5);
+            return new MorphologyDbHelper(new ReplicaSet(Collections.singletonList(replica), "SELECT 1"), 0.01);
+        }
+
+        private Connection connect() {
+            return proxy(Connection.class, (connection, method, args) -> {
+                switch (method.getName()) {
+                    case "prepareStatement":
+                        return statement((String) args[0]);
+                    case "createStatement":
+                        return statement("SELECT 1");
+                    case "getAutoCommit":
+                        return true;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+        }
+
+        private PreparedStatement statement(String sql) {
+            return proxy(PreparedStatement.class, (statement, method, args) -> {
+                if (method.getName().equals("executeQuery")) {
+                    SQLException error = queryError;
+                    queries.incrementAndGet();
+                    if (error != null) {
+                        throw error;
+                    }
+                    boolean whole = sql.startsWith("SELECT count(*)") || !sql.contains("WHERE");
+                    return result(whole ? 1 : 0);
+                }
+                return method.getName().equals("execute") ? true : defaultValue(method.getReturnType());
+            });
+        }
+
+        private ResultSet result(int rows) {
+            AtomicInteger left = new AtomicInteger(rows);
+            return proxy(ResultSet.class, (set, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        return left.getAndDecrement() > 0;
+                    case "getLong":
+                        return 1L;
+                    case "getString":
+                        return WORD;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(BloomFilterMetricsTest.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
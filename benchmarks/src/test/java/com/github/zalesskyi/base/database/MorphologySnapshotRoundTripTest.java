@@ -0,0 +1,117 @@
+package com.github.zalesskyi.base.database;
+
+import com.github.zalesskyi.benchmarks.InMemoryMorphology;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Экспорт морфологии в памяти в снимок (MorphologySnapshotExporter) и чтение снимка (MorphologySnapshot):
+ * снимок должен отвечать так же, как исходные данные. Слова - кириллица (в том числе 'ё' и заглавные),
+ * латиница и знаки; одна таблица пустая.
+ */
+public class MorphologySnapshotRoundTripTest {
+    private static final String EMPTY_TABLE = DbSchema.PredicativeTable.NAME;
+    private static final String[] EXTRA_NOUNS = {"ёж", "Ёлка", "ёлка", "щётка", "я", "x-ray", "ъ", "дом-музей"};
+    private static final String[] ABSENT_WORDS = {"", "ё", "ёжик", "ж", "Дом", "домa", "zzz", "яя"};
+
+    private final InMemoryMorphology source = new InMemoryMorphology();
+    private final Map<String, List<String>> expected = new LinkedHashMap<>();
+    private File file;
+    private MorphologySnapshot snapshot;
+
+    @Before
+    public void exportSnapshot() throws Exception {
+        Map<String, MorphologySnapshotExporter.TableData> tables = new LinkedHashMap<>();
+        for (String table : MorphologySnapshotExporter.TABLES) {
+            List<String> words = table.equals(EMPTY_TABLE) ? new ArrayList<>() : sourceWords(table);
+            if (table.equals(DbSchema.NounsTable.NAME)) {
+                words.addAll(Arrays.asList(EXTRA_NOUNS));
+            }
+            MorphologySnapshotExporter.TableData data = new MorphologySnapshotExporter.TableData();
+            for (int i = 0; i < words.size(); i++) {
+                data.rows.add(row(words.get(i), i, "им"));
+                data.rows.add(row(words.get(i), i, "род"));        // две словоформы одного слова
+            }
+            tables.put(table, data);
+
+            List<String> sorted = new ArrayList<>(new TreeSet<>(words));
+            expected.put(table, sorted);
+        }
+        file = File.createTempFile("morphology", ".snapshot");
+        MorphologySnapshotExporter.write(tables, file);
+        snapshot = new MorphologySnapshot(file);
+    }
+
+    @After
+    public void deleteSnapshot() {
+        file.delete();
+    }
+
+    @Test
+    public void queryWordsReturnsSourceWords() {
+        assertEquals(new HashSet<>(Arrays.asList(MorphologySnapshotExporter.TABLES)), snapshot.getTableNames());
+        expected.forEach((table, words) -> assertEquals(table, words, snapshot.queryWords(table)));
+        assertTrue(snapshot.queryWords(EMPTY_TABLE).isEmpty());
+    }
+
+    @Test
+    public void queryTablesContainingMatchesSource() {
+        Set<String> words = new LinkedHashSet<>(Arrays.asList(ABSENT_WORDS));
+        expected.values().forEach(words::addAll);
+
+        Map<String, Set<String>> expectedTables = new HashMap<>();
+        expected.forEach((table, tableWords) -> tableWords.forEach(word ->
+                expectedTables.computeIfAbsent(word, w -> new HashSet<>()).add(table)));
+
+        assertEquals(expectedTables, snapshot.queryTablesContaining(words, MorphologySnapshotExporter.TABLES));
+
+        words.removeAll(Arrays.asList(EXTRA_NOUNS));                    // остальные слова - из исходных данных
+        String[] sourceTables = expected.keySet().stream().filter(table -> !table.equals(EMPTY_TABLE))
+                .toArray(String[]::new);
+        assertEquals(source.queryTablesContaining(words, sourceTables),
+                snapshot.queryTablesContaining(words, sourceTables));
+        for (String word : ABSENT_WORDS) {
+            assertFalse(word, snapshot.isTableContainsWord(DbSchema.NounsTable.NAME, word));
+            assertFalse(word, snapshot.isTableContainsWord(EMPTY_TABLE, word));
+        }
+    }
+
+    @Test
+    public void rowValuesSurviveExport() {
+        for (String word : EXTRA_NOUNS) {
+            assertTrue(word, snapshot.isTableContainsWord(DbSchema.NounsTable.NAME, word));
+            assertEquals(word, Arrays.asList("им", "род"), snapshot.getCases(DbSchema.NounsTable.NAME, word));
+            assertEquals(word, "ж", snapshot.getGender(DbSchema.NounsTable.NAME, word));
+            assertEquals(word, 1, snapshot.getPlurality(DbSchema.NounsTable.NAME, word));
+        }
+        assertEquals(-1, snapshot.getCode(EMPTY_TABLE, "ёж"));
+        assertEquals(null, snapshot.getCases(EMPTY_TABLE, "ёж"));
+    }
+
+    private List<String> sourceWords(String table) {
+        try {
+            return new ArrayList<>(source.queryWords(table));
+        } catch (UnsupportedOperationException exc) {
+            return new ArrayList<>();                                  // таблицы нет в источнике
+        }
+    }
+
+    private static MorphologySnapshotExporter.Row row(String word, int code, String wordCase) {
+        MorphologySnapshotExporter.Row row = new MorphologySnapshotExporter.Row();
+        row.word = word;
+        row.code = code;
+        row.codeParent = code;
+        row.plural = 1;
+        row.gender = "ж";
+        row.wordCase = wordCase;
+        return row;
+    }
+}
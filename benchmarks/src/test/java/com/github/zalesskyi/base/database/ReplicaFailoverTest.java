@@ -0,0 +1,199 @@
+package com.github.zalesskyi.base.database;
+
+import org.apache.commons.dbcp.PoolableConnectionFactory;
+import org.apache.commons.dbcp.PoolingDataSource;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Выбор реплик и их исключение (Replica, ReplicaSet, MorphologyDbHelper) на заменителях БД:
+ * соединения, операторы и результаты запросов - заглушки (Proxy), ошибки задаются в тесте.
+ * Фильтры Блума отключены, поэтому таблицы при создании MorphologyDbHelper не читаются.
+ */
+public class ReplicaFailoverTest {
+    private static final String VALIDATION_QUERY = "SELECT 1";
+    private static final long RESTORE_TIMEOUT_MILLIS = 5_000;
+
+    @Test
+    public void classifiesConnectionFailures() {
+        assertTrue(Replica.isConnectionFailure(new SQLException("Connection refused", "08001")));
+        assertTrue(Replica.isConnectionFailure(new SQLException("I/O error", "08006")));
+        assertTrue(Replica.isConnectionFailure(new SQLException("Server is shutting down", "57P01")));
+        assertTrue(Replica.isConnectionFailure(new SQLTransientConnectionException("timeout")));
+        assertTrue(Replica.isConnectionFailure(new SQLException("Cannot create connection", null,
+                new SQLException("Connection refused", "08001"))));
+
+        assertFalse(Replica.isConnectionFailure(new SQLException("Relation does not exist", "42P01")));
+        assertFalse(Replica.isConnectionFailure(new SQLException("Query canceled", "57014")));
+        assertFalse(Replica.isConnectionFailure(new SQLException("Cannot get a connection, pool error", null,
+                new NoSuchElementException("Timeout waiting for idle object"))));
+    }
+
+    @Test
+    public void connectionFailureIsRetriedAndEjectsReplica() throws Exception {
+        StandIn broken = new StandIn();
+        broken.connectError = new SQLException("Connection refused", "08001");
+        StandIn healthy = new StandIn();
+        Replica brokenReplica = broken.replica("failover-broken");
+        Replica healthyReplica = healthy.replica("failover-healthy");
+        MorphologyDbHelper dbHelper = new MorphologyDbHelper(
+                new ReplicaSet(Arrays.asList(brokenReplica, healthyReplica), VALIDATION_QUERY), 0);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(-1, dbHelper.queryCode(DbSchema.NounsTable.NAME, "дом"));   // повтор на исправной реплике
+        }
+        assertTrue(brokenReplica.isEjected());
+        assertFalse(healthyReplica.isEjected());
+        assertEquals(20, healthy.queries.get());
+
+        broken.connectError = null;
+        assertRestored(brokenReplica);
+    }
+
+    @Test
+    public void queryErrorIsNotRetriedAndDoesNotEject() {
+        StandIn first = new StandIn();
+        StandIn second = new StandIn();
+        first.queryError = second.queryError = new SQLException("Relation does not exist", "42P01");
+        Replica firstReplica = first.replica("failover-bad-sql-1");
+        Replica secondReplica = second.replica("failover-bad-sql-2");
+        MorphologyDbHelper dbHelper = new MorphologyDbHelper(
+                new ReplicaSet(Arrays.asList(firstReplica, secondReplica), VALIDATION_QUERY), 0);
+
+        for (int i = 0; i < 10; i++) {
+            assertQueryFails(dbHelper);
+        }
+        assertEquals(10, first.queries.get() + second.queries.get());   // без повторов
+        assertFalse(firstReplica.isEjected());
+        assertFalse(secondReplica.isEjected());
+    }
+
+    @Test
+    public void exhaustedPoolDoesNotEjectAndDoesNotBlockProbe() throws Exception {
+        StandIn pooled = new StandIn();
+        StandIn direct = new StandIn();
+        GenericObjectPool<Object> pool = new GenericObjectPool<>();
+        pool.setMaxActive(1);
+        pool.setMaxWait(10);
+        new PoolableConnectionFactory(pooled::connect, pool, null, null, false, true);
+        Replica replica = new Replica("failover-exhausted", new PoolingDataSource(pool), direct::connect, 1);
+        MorphologyDbHelper dbHelper = new MorphologyDbHelper(
+                new ReplicaSet(Collections.singletonList(replica), VALIDATION_QUERY), 0);
+
+        Object held = pool.borrowObject();
+        for (int i = 0; i < 5; i++) {
+            assertQueryFails(dbHelper);                                 // нет свободного соединения
+        }
+        assertFalse(replica.isEjected());
+
+        pool.invalidateObject(held);                                    // новые соединения не открываются
+        pooled.connectError = new SQLException("Connection refused", "08001");
+        for (int i = 0; i < 3; i++) {
+            assertQueryFails(dbHelper);
+        }
+        assertTrue(replica.isEjected());
+
+        pooled.connectError = null;
+        held = pool.borrowObject();                                     // пул снова занят
+        assertRestored(replica);                                        // проверка - в обход пула
+        pool.returnObject(held);
+    }
+
+    private static void assertQueryFails(MorphologyDbHelper dbHelper) {
+        try {
+            dbHelper.queryCode(DbSchema.NounsTable.NAME, "дом");
+            fail("Database error is not reported");
+        } catch (UnsupportedOperationException expected) {
+            // ошибка передается вызывающему
+        }
+    }
+
+    private static void assertRestored(Replica replica) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RESTORE_TIMEOUT_MILLIS;
+        while (replica.isEjected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse("Replica is not restored after a successful probe", replica.isEjected());
+    }
+
+    /**
+     * Заменитель сервера БД: на любой запрос - пустой результат или заданная ошибка.
+     */
+    private static final class StandIn {
+        private volatile SQLException connectError;
+        private volatile SQLException queryError;
+        private final AtomicInteger queries = new AtomicInteger();
+
+        private Replica replica(String name) {
+            DataSource dataSource = proxy(DataSource.class, (instance, method, args) ->
+                    method.getName().equals("getConnection") ? connect() : defaultValue(method.getReturnType()));
+            return new Replica(name, dataSource, this::connect, 5);
+        }
+
+        private Connection connect() throws SQLException {
+            SQLException error = connectError;
+            if (error != null) {
+                throw error;
+            }
+            return proxy(Connection.class, (connection, method, args) -> {
+                switch (method.getName()) {
+                    case "prepareStatement":
+                    case "createStatement":
+                        return statement();
+                    case "getAutoCommit":
+                        return true;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+        }
+
+        private PreparedStatement statement() {
+            return proxy(PreparedStatement.class, (statement, method, args) -> {
+                if (method.getName().equals("executeQuery")) {
+                    queries.incrementAndGet();
+                    SQLException error = queryError;
+                    if (error != null) {
+                        throw error;
+                    }
+                    return proxy(ResultSet.class, (set, setMethod, setArgs) ->
+                            defaultValue(setMethod.getReturnType()));   // next() - false: строк нет
+                }
+                return method.getName().equals("execute") ? true : defaultValue(method.getReturnType());
+            });
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(ReplicaFailoverTest.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.zalesskyi.base.database;
+
+import com.github.zalesskyi.Metrics;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Поиск слов по уровням (TieredMorphologyRepository): слова, которых нет в верхнем уровне,
+ * ищутся в следующем уровне с той же таблицей. Уровни - таблицы в памяти, запросы к ним запоминаются.
+ */
+public class TieredMorphologyRepositoryTest {
+    private static final String NOUNS = DbSchema.NounsTable.NAME;
+    private static final String VERBS = DbSchema.VerbsTable.NAME;
+    private static final String ADJECTIVES = DbSchema.AdjectivesTable.NAME;
+    private static final AtomicInteger TIER_SUFFIX = new AtomicInteger();   // у каждого теста - свои счетчики уровней
+
+    private final String snapshotTier = "tier-test-snapshot-" + TIER_SUFFIX.incrementAndGet();
+    private final String databaseTier = "tier-test-database-" + TIER_SUFFIX.get();
+
+    private final Tables snapshot = new Tables()
+            .with(NOUNS, "дом", "кот")
+            .with(VERBS, "идти");
+    private final Tables database = new Tables()
+            .with(NOUNS, "дом", "кот", "смартфон")                    // "смартфон" добавлен после выгрузки снимка
+            .with(VERBS, "идти", "гуглить")
+            .with(ADJECTIVES, "новый");
+    private final TieredMorphologyRepository repository = repository();
+
+    @Test
+    public void missesFallThroughToNextTier() {
+        List<String> words = Arrays.asList("дом", "смартфон", "гуглить", "новый", "идти", "абв");
+        Map<String, Set<String>> expected = new HashMap<>();
+        expected.put("дом", Collections.singleton(NOUNS));
+        expected.put("смартфон", Collections.singleton(NOUNS));
+        expected.put("гуглить", Collections.singleton(VERBS));
+        expected.put("новый", Collections.singleton(ADJECTIVES));
+        expected.put("идти", Collections.singleton(VERBS));
+
+        assertEquals(expected, repository.queryTablesContaining(words, NOUNS, VERBS, ADJECTIVES));
+
+        assertEquals(1, snapshot.queries.size());
+        assertEquals(1, database.queries.size());
+        assertEquals(12, counter("morphology_tier_lookups_total", snapshotTier));   // 6 слов x 2 таблицы
+        assertEquals(2, counter("morphology_tier_found_total", snapshotTier));
+        assertEquals(16, counter("morphology_tier_lookups_total", databaseTier));   // без "дом" и "идти" в их таблицах
+        assertEquals(3, counter("morphology_tier_found_total", databaseTier));
+    }
+
+    @Test
+    public void singleWordFallsThroughToNextTier() {
+        assertTrue(repository.isTableContainsWord(NOUNS, "кот"));
+        assertTrue(repository.isTableContainsWord(NOUNS, "смартфон"));
+        assertFalse(repository.isTableContainsWord(NOUNS, "абв"));
+        assertEquals(1, repository.getPlurality(NOUNS, "смартфон"));
+        assertEquals(-1, repository.getPlurality(NOUNS, "абв"));
+        assertEquals(Arrays.asList("дом", "кот"), repository.queryWords(NOUNS));    // первый уровень с таблицей
+        assertEquals(Collections.singletonList("новый"), repository.queryWords(ADJECTIVES));
+    }
+
+    private TieredMorphologyRepository repository() {
+        LinkedHashMap<String, MorphologyRepository> tiers = new LinkedHashMap<>();
+        tiers.put(snapshotTier, snapshot);
+        tiers.put(databaseTier, database);
+        return new TieredMorphologyRepository(tiers);
+    }
+
+    private static long counter(String name, String tier) {
+        return Metrics.counter(name, "", Metrics.label("tier", tier)).sum();
+    }
+
+    /**
+     * Уровень из таблиц в памяти. Запоминает слова каждого запроса queryTablesContaining.
+     */
+    private static final class Tables implements MorphologyRepository {
+        private final Map<String, List<String>> tables = new HashMap<>();
+        private final List<Set<String>> queries = new ArrayList<>();
+
+        private Tables with(String table, String... words) {
+            tables.put(table, Arrays.asList(words));
+            return this;
+        }
+
+        @Override
+        public List<String> queryWords(String from) {
+            return tables.get(from);
+        }
+
+        @Override
+        public Map<String, Set<String>> queryTablesContaining(Collection<String> words, String... tables) {
+            queries.add(new HashSet<>(words));
+            Map<String, Set<String>> found = new HashMap<>();
+            for (String table : tables) {
+                for (String word : words) {
+                    if (isTableContainsWord(table, word)) {
+                        found.computeIfAbsent(word, w -> new HashSet<>()).add(table);
+                    }
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public boolean isTableContainsWord(String table, String word) {
+            return tables.containsKey(table) && tables.get(table).contains(word);
+        }
+
+        @Override
+        public int getPlurality(String table, String word) {
+            return isTableContainsWord(table, word) ? 1 : -1;
+        }
+
+        @Override
+        public boolean containsTable(String table) {
+            return tables.containsKey(table);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.zalesskyi.base.summarization;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Сравнение PorterStemmer (через PartOfSpeechHelper.stem) с прежней реализацией на регулярных выражениях.
+ *
+ * Слова генерируются с фиксированным зерном: случайные основы и цепочки окончаний из всех групп
+ * алгоритма, а также заглавные буквы, 'ё', латиница, цифры и переводы строк - на них видны
+ * особенности прежней реализации (удаление окончания во всех местах слова, правила '.' в RVRE).
+ */
+public class PorterStemmerDifferentialTest {
+    private static final int WORDS = 1_000_000;
+    private static final long SEED = 20180301L;
+
+    private static final String LETTERS = "абвгдеёжзийклмнопрстуфхцчшщъыьэюя";
+    private static final String OTHER = "ABCXYZabcxyz0123456789-\n\r";
+    private static final String[] SUFFIXES = {
+            // PERFECTIVE_GERUND, REFLEXIVE
+            "ив", "ивши", "ившись", "ыв", "ывши", "ывшись", "в", "вши", "вшись", "ся", "сь",
+            // ADJECTIVE, PARTICIPLE
+            "ее", "ие", "ые", "ое", "ими", "ыми", "ей", "ий", "ый", "ой", "ем", "им", "ым", "ом", "его", "ого",
+            "ему", "ому", "их", "ых", "ую", "юю", "ая", "яя", "ою", "ею", "ивш", "ывш", "ующ", "нн", "вш", "ющ", "щ",
+            // VERB
+            "ила", "ыла", "ена", "ейте", "уйте", "ите", "или", "ыли", "уй", "ил", "ыл", "ен", "ило", "ыло", "ено",
+            "ят", "ует", "уют", "ит", "ыт", "ены", "ить", "ыть", "ишь", "ю", "ла", "на", "ете", "йте", "ли", "й",
+            "л", "н", "ло", "но", "ет", "ют", "ны", "ть", "ешь", "нно",
+            // NOUN, DERIVATIONAL, SUPERLATIVE, шаг 4
+            "а", "ев", "ов", "ье", "е", "иями", "ями", "ами", "еи", "ии", "и", "ией", "иям", "ям", "ием", "ам",
+            "о", "у", "ах", "иях", "ях", "ы", "ь", "ию", "ью", "ия", "ья", "я", "ост", "ость", "ейше", "ейш"};
+
+    @Test
+    public void stemsMatchRegexImplementation() {
+        RegexPorterStemmer expected = new RegexPorterStemmer();
+        PartOfSpeechHelper actual = new PartOfSpeechHelper();
+        Random random = new Random(SEED);
+        for (int i = 0; i < WORDS; i++) {
+            String word = nextWord(random);
+            assertEquals("word: \"" + word + "\"", expected.stem(word), actual.stem(word));
+        }
+    }
+
+    private static String nextWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int stemLength = random.nextInt(8);
+        for (int i = 0; i < stemLength; i++) {
+            word.append(nextChar(random));
+        }
+        int suffixes = random.nextInt(4);
+        for (int i = 0; i < suffixes; i++) {
+            word.append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+        }
+        if (random.nextInt(10) == 0 && word.length() > 0) {                 // суффикс в середине слова
+            word.insert(random.nextInt(word.length()), SUFFIXES[random.nextInt(SUFFIXES.length)]);
+        }
+        return word.toString();
+    }
+
+    private static char nextChar(Random random) {
+        int kind = random.nextInt(20);
+        if (kind == 0) {
+            return OTHER.charAt(random.nextInt(OTHER.length()));
+        }
+        char c = LETTERS.charAt(random.nextInt(LETTERS.length()));
+        return kind == 1 ? Character.toUpperCase(c) : c;
+    }
+}
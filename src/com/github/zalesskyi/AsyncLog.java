@@ -0,0 +1,187 @@
+package com.github.zalesskyi;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Асинхронный журнал.
+ *
+ * Потоки обработки только кладут сообщение в кольцевой буфер фиксированного размера и не ждут
+ * ни записи в файл, ни вывода в консоль. Если буфер заполнен, сообщение отбрасывается
+ * (количество отброшенных сообщений записывается в журнал, когда запись догоняет буфер).
+ * Сообщения записывает отдельный поток, сбрасывая буфер файла, когда очередь опустела.
+ *
+ * Сообщения ниже заданного уровня отбрасываются сразу, не попадая в буфер; дорогие сообщения
+ * можно передавать через Supplier (Utils.debug), тогда они даже не строятся.
+ *
+ * Настройки (системные свойства):
+ *  textAbstracting.logFile - файл журнала (пустая строка - не писать в файл)
+ *  textAbstracting.logLevel - уровень журнала: DEBUG, INFO, WARN, ERROR
+ *  textAbstracting.logBufferSize - размер буфера сообщений
+ *  textAbstracting.logConsole - дублировать сообщения в консоль (true/false)
+ */
+public class AsyncLog {
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int DRAIN_BATCH = 256;
+
+    private final ArrayBlockingQueue<Record> mBuffer;
+    private final Level mLevel;
+    private final Writer mFile;
+    private final boolean mConsole;
+    private final LongAdder mDropped = new LongAdder();
+    private long mReportedDropped;
+
+    public AsyncLog() {
+        this(System.getProperty("textAbstracting.logFile", Utils.Constants.LOG_FILE_NAME),
+                Level.valueOf(System.getProperty("textAbstracting.logLevel", Level.INFO.name()).toUpperCase()),
+                Integer.getInteger("textAbstracting.logBufferSize", DEFAULT_BUFFER_SIZE),
+                Boolean.parseBoolean(System.getProperty("textAbstracting.logConsole", "true")));
+    }
+
+    /**
+     * @param fileName файл журнала (null или пустая строка - не писать в файл)
+     * @param level минимальный уровень записываемых сообщений
+     * @param bufferSize размер буфера сообщений
+     * @param console дублировать сообщения в консоль
+     */
+    public AsyncLog(String fileName, Level level, int bufferSize, boolean console) {
+        mBuffer = new ArrayBlockingQueue<>(bufferSize);
+        mLevel = level;
+        mConsole = console;
+        mFile = openFile(fileName);
+
+        Thread writer = new Thread(this::writeLoop, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "async-log-shutdown"));
+    }
+
+    /**
+     * @param level уровень сообщения
+     * @return true, если сообщения этого уровня записываются
+     */
+    public boolean isEnabled(Level level) {
+        return level.compareTo(mLevel) >= 0;
+    }
+
+    /**
+     * Постановка сообщения в очередь на запись. Не блокирует вызывающий поток.
+     *
+     * @param level уровень сообщения
+     * @param message сообщение
+     */
+    public void log(Level level, String message) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (!mBuffer.offer(new Record(level, message))) {
+            mDropped.increment();
+        }
+    }
+
+    /**
+     * @return количество сообщений, отброшенных из-за переполнения буфера
+     */
+    public long getDroppedCount() {
+        return mDropped.sum();
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(DRAIN_BATCH);
+        while (true) {
+            try {
+                Record first = mBuffer.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                mBuffer.drainTo(batch, DRAIN_BATCH - 1);
+                write(batch);
+                batch.clear();
+                if (mBuffer.isEmpty()) {
+                    flush();
+                }
+            } catch (InterruptedException exc) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Запись всех оставшихся сообщений (при завершении сервера).
+     */
+    private synchronized void drain() {
+        List<Record> batch = new ArrayList<>(mBuffer.size());
+        mBuffer.drainTo(batch);
+        write(batch);
+        flush();
+    }
+
+    private synchronized void write(List<Record> batch) {
+        long dropped = mDropped.sum();
+        if (dropped != mReportedDropped) {
+            batch.add(new Record(Level.WARN, (dropped - mReportedDropped) + " log messages dropped"));
+            mReportedDropped = dropped;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        for (Record record : batch) {
+            if (mConsole) {
+                (record.mLevel == Level.ERROR ? System.err : System.out).println(record.mMessage);
+            }
+            if (mFile != null) {
+                try {
+                    mFile.write(format.format(new Date(record.mTime)) + " " + record.mLevel + " ["
+                            + record.mThread + "] " + record.mMessage + "\r\n");
+                } catch (IOException exc) {
+                    exc.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private synchronized void flush() {
+        if (mFile != null) {
+            try {
+                mFile.flush();
+            } catch (IOException exc) {
+                exc.printStackTrace();
+            }
+        }
+    }
+
+    private static Writer openFile(String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(fileName, false), StandardCharsets.UTF_8), 64 * 1024);
+        } catch (FileNotFoundException exc) {
+            exc.printStackTrace();
+            return null;
+        }
+    }
+
+    private static final class Record {
+        private final Level mLevel;
+        private final String mMessage;
+        private final String mThread = Thread.currentThread().getName();
+        private final long mTime = System.currentTimeMillis();
+
+        private Record(Level level, String message) {
+            mLevel = level;
+            mMessage = message;
+        }
+    }
+}
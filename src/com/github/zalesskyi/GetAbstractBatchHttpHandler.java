@@ -0,0 +1,188 @@
+package com.github.zalesskyi;
+
+import com.github.zalesskyi.model.BatchResult;
+import com.github.zalesskyi.model.Request;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пакетное реферирование.
+ *
+ * Тело запроса - JSON-массив объектов Request. Массив читается потоково, и каждый текст отправляется
+ * на реферирование сразу после чтения, не дожидаясь конца тела запроса. Тексты реферируются параллельно
+ * (общие для всех запросов кэши стоп-слов, частей речи и результатов используются всем пакетом),
+ * а результаты отправляются клиенту по мере готовности - по одной строке NDJSON (BatchResult)
+ * на каждый текст, в порядке завершения, в том числе пока тело запроса еще читается.
+ * Номер текста в массиве передается в поле index.
+ * Если тело запроса - не JSON-массив, отвечают 400 (слишком большое тело - 413). Ошибка в середине массива
+ * обнаруживается, когда ответ уже начат: тогда после результатов прочитанных текстов отправляется
+ * строка с номером непрочитанного элемента и ошибкой, и чтение пакета прекращается.
+ *
+ * Сам пакетный запрос, как и обычный, выполняется в пуле потоков обработки (RequestExecutor),
+ * а тексты пакета - в отдельном пуле (textAbstracting.batchWorkers потоков).
+ *
+ * Пакет не может занять пул текстов целиком: одновременно реферируется не больше
+ * textAbstracting.batchMaxInFlight текстов пакета, следующий текст читается только после завершения
+ * одного из них. Количество текстов в пакете ограничено (textAbstracting.maxBatchTexts), для лишних
+ * текстов отправляется строка с ошибкой. Очередь пула текстов
+ * тоже ограничена (textAbstracting.batchQueueCapacity) - если она заполнена, текст реферируется
+ * в потоке самого пакетного запроса.
+ */
+public class GetAbstractBatchHttpHandler implements HttpHandler {
+    private static final int DEFAULT_BATCH_WORKERS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_BATCH_QUEUE_CAPACITY = 256;
+    private static final int DEFAULT_MAX_BATCH_TEXTS = 10_000;
+
+    private final RequestExecutor mExecutor;
+    private final SummaryService mService;
+    private final ExecutorService mBatchExecutor;
+    private final int mMaxInFlight;
+    private final int mMaxTexts;
+
+    public GetAbstractBatchHttpHandler(RequestExecutor executor, SummaryService service) {
+        mExecutor = executor;
+        mService = service;
+        int workers = Integer.getInteger("textAbstracting.batchWorkers", DEFAULT_BATCH_WORKERS);
+        mBatchExecutor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Integer.getInteger("textAbstracting.batchQueueCapacity",
+                        DEFAULT_BATCH_QUEUE_CAPACITY)),
+                new BatchThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        mMaxInFlight = Math.max(1, Integer.getInteger("textAbstracting.batchMaxInFlight", 2 * workers));
+        mMaxTexts = Integer.getInteger("textAbstracting.maxBatchTexts", DEFAULT_MAX_BATCH_TEXTS);
+    }
+
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+        if (!mExecutor.execute(() -> process(httpExchange))) {
+            Utils.warn("Batch request rejected: " + mExecutor);
+            httpExchange.getResponseHeaders().set("Retry-After", Integer.toString(Utils.Constants.RETRY_AFTER_SECONDS));
+            httpExchange.sendResponseHeaders(Utils.Constants.HTTP_SERVICE_UNAVAILABLE, -1);
+            httpExchange.close();
+        }
+    }
+
+    private void process(HttpExchange httpExchange) {
+        JsonReader reader;
+        try {
+            reader = HttpMessages.openRequestReader(httpExchange);
+            reader.beginArray();
+        } catch (IOException | RuntimeException exc) {
+            Utils.warn("Bad batch request: " + exc);
+            HttpMessages.sendEmptyResponse(httpExchange, HttpMessages.errorCodeOf(exc));
+            httpExchange.close();
+            return;
+        }
+
+        List<Future<BatchResult>> futures = new ArrayList<>();
+        CompletionService<BatchResult> completion = new ExecutorCompletionService<>(mBatchExecutor);
+        try (Writer out = HttpMessages.openResponseWriter(httpExchange, Utils.Constants.HTTP_OK,
+                "application/x-ndjson; charset=utf-8")) {
+            int written = 0;
+            BatchResult readError = null;
+            while (readError == null) {
+                Future<BatchResult> completed;
+                while ((completed = completion.poll()) != null) {       // готовые результаты - сразу клиенту
+                    write(completed.get(), out);
+                    written++;
+                }
+                if (futures.size() - written >= mMaxInFlight) {
+                    write(completion.take().get(), out);
+                    written++;
+                }
+
+                int index = futures.size();
+                Request request;
+                try {
+                    if (!reader.hasNext()) {
+                        reader.endArray();
+                        break;
+                    }
+                    if (index >= mMaxTexts) {
+                        throw new HttpMessages.BodyTooLargeException("Batch has more than " + mMaxTexts + " texts");
+                    }
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                        request = null;
+                    } else {
+                        request = HttpMessages.readRequest(reader);
+                    }
+                } catch (IOException | RuntimeException exc) {
+                    // ответ уже начат - ошибка передается строкой с номером элемента, который не удалось прочитать
+                    Utils.warn("Bad batch request: " + exc);
+                    readError = new BatchResult(index);
+                    readError.setError("Bad batch request: " + exc.getMessage());
+                    break;
+                }
+                futures.add(completion.submit(() -> summarize(index, request)));
+            }
+
+            int submitted = futures.size();
+            Utils.debug(() -> "Batch of " + submitted + " texts");
+            for (; written < futures.size(); written++) {
+                write(completion.take().get(), out);
+            }
+            if (readError != null) {
+                write(readError, out);
+                HttpMessages.skipRequestBody(httpExchange);
+            }
+        } catch (IOException | RuntimeException | InterruptedException | ExecutionException exc) {
+            exc.printStackTrace();
+            futures.forEach(future -> future.cancel(false));   // клиент отключился - оставшиеся тексты не нужны
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    /**
+     * Отправка одной строки NDJSON клиенту.
+     */
+    private static void write(BatchResult result, Writer out) throws IOException {
+        HttpMessages.GSON.toJson(result, out);
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * Реферирование одного текста пакета. Ошибка реферирования записывается в результат.
+     */
+    private BatchResult summarize(int index, Request request) {
+        BatchResult result = new BatchResult(index);
+        if (request == null || request.getSource() == null) {
+            result.setError("Request has no source");
+            return result;
+        }
+        try {
+            String key = SummaryCache.keyOf(request);
+            Summary summary = mService.getSummary(request, key);
+            result.setSummary(summary.getText());
+            if (!summary.isDegraded()) {
+                result.setEtag(SummaryCache.etagOf(key));
+            }
+        } catch (TimeoutException exc) {
+            result.setError("Same request is still in progress");
+        } catch (Exception exc) {
+            exc.printStackTrace();
+            result.setError(exc.toString());
+        }
+        return result;
+    }
+
+    private static final class BatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "abstract-batch-worker-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.github.zalesskyi;
 
 import com.github.zalesskyi.model.Request;
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
@@ -9,20 +10,65 @@ import java.io.*;
 
 /**
  * Created by Алексей on 28.05.2018.
+ *
+ * Запрос обрабатывается в пуле потоков обработки (RequestExecutor).
+ * Тело запроса (JSON-объект Request) читается потоково (HttpMessages): на некорректный JSON
+ * отвечают 400, на слишком большое тело - 413.
+ * Если пул перегружен, клиенту сразу отвечают 503 с заголовком Retry-After.
  */
 public class GetAbstractHttpHandler implements HttpHandler {
+    private static final Histogram QUEUE_TIME = Metrics.stage("queue");
+    private static final Histogram PARSE_TIME = Metrics.stage("parse_request");
+
+    private final RequestExecutor mExecutor;
+    private final SummaryService mService;
+
+    public GetAbstractHttpHandler(RequestExecutor executor, SummaryService service) {
+        mExecutor = executor;
+        mService = service;
+    }
 
     @Override
     public void handle(HttpExchange httpExchange) throws IOException {
-        BufferedReader reader = new BufferedReader(
-                new InputStreamReader(httpExchange.getRequestBody(), "utf-8"));
-        String query = reader.readLine();
-        Utils.log(Thread.currentThread().getName());
+        long submitted = System.nanoTime();
+        if (!mExecutor.execute(() -> {
+            QUEUE_TIME.recordSince(submitted);
+            process(httpExchange);
+        })) {
+            Utils.warn("Request rejected: " + mExecutor);
+            sendServiceUnavailable(httpExchange);
+        }
+    }
+
+    private void process(HttpExchange httpExchange) {
+        Request req;
+        long start = System.nanoTime();
+        try {
+            JsonReader reader = HttpMessages.openRequestReader(httpExchange);
+            req = HttpMessages.readRequest(reader);
+            if (req.getSource() == null) {
+                throw new JsonParseException("Request has no source");
+            }
+            PARSE_TIME.recordSince(start);
+            Utils.debug(() -> "Request: " + req.getSource().length() + " chars, cofficient " + req.getCofficient());
+        } catch (IOException | RuntimeException exc) {
+            Utils.warn("Bad request: " + exc);
+            HttpMessages.sendEmptyResponse(httpExchange, HttpMessages.errorCodeOf(exc));
+            httpExchange.close();
+            return;
+        }
 
-        Gson gson = new Gson();
-        Request req = gson.fromJson(query, Request.class);
-        Utils.log(req.toString());
+        try {
+            new ProcessThread(req, httpExchange, mService).run();
+        } catch (RuntimeException exc) {
+            exc.printStackTrace();
+            httpExchange.close();
+        }
+    }
 
-        new ProcessThread(req.getSource(), httpExchange);
+    private void sendServiceUnavailable(HttpExchange httpExchange) throws IOException {
+        httpExchange.getResponseHeaders().set("Retry-After", Integer.toString(Utils.Constants.RETRY_AFTER_SECONDS));
+        httpExchange.sendResponseHeaders(Utils.Constants.HTTP_SERVICE_UNAVAILABLE, -1);
+        httpExchange.close();
     }
 }
@@ -0,0 +1,122 @@
+package com.github.zalesskyi;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма неотрицательных значений (времени в наносекундах, размеров) с логарифмически-линейными
+ * интервалами, как в HdrHistogram: каждый интервал [2^k, 2^(k+1)) делится на 32 равные части,
+ * поэтому относительная погрешность процентилей не больше ~3% во всем диапазоне long,
+ * а память фиксирована (~15 КБ).
+ *
+ * Запись значения - одно атомарное увеличение счетчика без блокировок, поэтому гистограмму можно
+ * обновлять из всех потоков обработки. Процентили считаются по мгновенному снимку счетчиков.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;        // значения меньше - каждое в своем интервале
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final LongAdder mCount = new LongAdder();
+    private final LongAdder mSum = new LongAdder();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * @param value значение (отрицательные значения считаются нулем)
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts.incrementAndGet(indexOf(value));
+        mCount.increment();
+        mSum.add(value);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * Запись времени, прошедшего с начала этапа.
+     *
+     * @param startNanos System.nanoTime() в начале этапа
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return mCount.sum();
+    }
+
+    public long getSum() {
+        return mSum.sum();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * @param percentile процентиль (0..100)
+     * @return значение, не больше которого percentile процентов записанных значений (с точностью интервала)
+     */
+    public long getValueAtPercentile(double percentile) {
+        return getValuesAtPercentiles(percentile)[0];
+    }
+
+    /**
+     * Несколько процентилей по одному снимку счетчиков.
+     *
+     * @param percentiles процентили (0..100) по возрастанию
+     * @return значения процентилей, 0 если значений нет
+     */
+    public long[] getValuesAtPercentiles(double... percentiles) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+
+        long[] values = new long[percentiles.length];
+        if (total == 0) {
+            return values;
+        }
+        long max = getMax();
+        int bucket = 0;
+        long seen = counts[0];
+        for (int p = 0; p < percentiles.length; p++) {
+            long rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100.0 * total));
+            while (seen < rank && bucket < BUCKETS - 1) {
+                seen += counts[++bucket];
+            }
+            values[p] = Math.min(valueOf(bucket), max);
+        }
+        return values;
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return середина интервала
+     */
+    private static long valueOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return (subBucket << shift) + (1L << (shift - 1));
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.zalesskyi;
+
+import com.github.zalesskyi.model.Request;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Чтение запросов и запись ответов.
+ *
+ * Тело запроса читается потоково (JsonReader) без промежуточной строки, размер тела ограничен
+ * (textAbstracting.maxBodyBytes, после распаковки). Поддерживается сжатие gzip:
+ * тело запроса с Content-Encoding: gzip распаковывается, ответ сжимается,
+ * если клиент указал gzip в Accept-Encoding. Ответ кодируется в UTF-8 сразу в поток ответа.
+ */
+public class HttpMessages {
+    public static final Gson GSON = new Gson();
+
+    private static final long MAX_BODY_BYTES = Long.getLong("textAbstracting.maxBodyBytes", 16L * 1024 * 1024);
+    private static final String GZIP = "gzip";
+
+    /**
+     * Тело запроса больше допустимого размера.
+     */
+    public static class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public BodyTooLargeException(long maxBytes) {
+            super("Request body is larger than " + maxBytes + " bytes");
+        }
+
+        public BodyTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @param httpExchange запрос
+     * @return поток чтения JSON из тела запроса
+     * @throws IOException если тело запроса не удалось распаковать
+     */
+    public static JsonReader openRequestReader(HttpExchange httpExchange) throws IOException {
+        InputStream body = httpExchange.getRequestBody();
+        if (GZIP.equalsIgnoreCase(httpExchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            body = new GZIPInputStream(body);
+        }
+        return new JsonReader(new BufferedReader(new InputStreamReader(
+                new LimitedInputStream(body, MAX_BODY_BYTES), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Чтение объекта Request.
+     * Отсутствующий или null коэффициент обрабатывается так же, как в Request.setCofficient.
+     *
+     * @param reader поток чтения JSON, следующий элемент - объект запроса
+     * @return запрос
+     * @throws IOException если JSON некорректен или тело запроса слишком большое
+     */
+    public static Request readRequest(JsonReader reader) throws IOException {
+        Request request = new Request();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                if ("cofficient".equals(name)) {
+                    request.setCofficient(null);
+                }
+            } else if ("source".equals(name)) {
+                request.setSource(reader.nextString());
+            } else if ("cofficient".equals(name)) {
+                request.setCofficient(reader.nextInt());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return request;
+    }
+
+    /**
+     * Отправка заголовков ответа и открытие потока записи тела ответа (UTF-8, при необходимости gzip).
+     * Тело передается частями (chunked), его размер заранее не известен.
+     *
+     * @param httpExchange запрос
+     * @param code код ответа
+     * @param contentType тип содержимого
+     * @return поток записи тела ответа
+     * @throws IOException ошибка отправки
+     */
+    public static Writer openResponseWriter(HttpExchange httpExchange, int code, String contentType)
+            throws IOException {
+        boolean gzip = acceptsGzip(httpExchange);
+        httpExchange.getResponseHeaders().set("Content-Type", contentType);
+        if (gzip) {
+            httpExchange.getResponseHeaders().set("Content-Encoding", GZIP);
+            httpExchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+        }
+        httpExchange.sendResponseHeaders(code, 0);
+        OutputStream body = httpExchange.getResponseBody();
+        if (gzip) {
+            body = new GZIPOutputStream(body, true);
+        }
+        return new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Ответ без тела.
+     *
+     * @param httpExchange запрос
+     * @param code код ответа
+     */
+    public static void sendEmptyResponse(HttpExchange httpExchange, int code) {
+        if (code == Utils.Constants.HTTP_SERVICE_UNAVAILABLE) {
+            httpExchange.getResponseHeaders().set("Retry-After", Integer.toString(Utils.Constants.RETRY_AFTER_SECONDS));
+        }
+        try {
+            httpExchange.sendResponseHeaders(code, -1);
+        } catch (IOException exc) {
+            exc.printStackTrace();
+        }
+    }
+
+    /**
+     * @param exc ошибка чтения запроса
+     * @return код ответа на некорректный запрос: 413 для слишком большого тела, иначе 400
+     */
+    public static int errorCodeOf(Exception exc) {
+        return exc instanceof BodyTooLargeException
+                ? Utils.Constants.HTTP_PAYLOAD_TOO_LARGE : Utils.Constants.HTTP_BAD_REQUEST;
+    }
+
+    /**
+     * Пропуск непрочитанного остатка тела запроса (не больше textAbstracting.maxBodyBytes).
+     * Если закрыть соединение, не дочитав тело, клиент может не получить конец уже отправленного ответа.
+     *
+     * @param httpExchange запрос
+     */
+    public static void skipRequestBody(HttpExchange httpExchange) {
+        try (InputStream body = new LimitedInputStream(httpExchange.getRequestBody(), MAX_BODY_BYTES)) {
+            byte[] buffer = new byte[8192];
+            while (body.read(buffer) >= 0) {
+                // остаток тела не нужен
+            }
+        } catch (IOException exc) {
+            Utils.warn("Request body is not skipped: " + exc);
+        }
+    }
+
+    private static boolean acceptsGzip(HttpExchange httpExchange) {
+        String acceptEncoding = httpExchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.trim().split(";");
+            if (GZIP.equalsIgnoreCase(parts[0].trim())
+                    && !(parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Поток, который прерывает чтение, если прочитано больше допустимого.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long mMaxBytes;
+        private long mRead;
+
+        private LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            mMaxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long bytes) throws BodyTooLargeException {
+            mRead += bytes;
+            if (mRead > mMaxBytes) {
+                throw new BodyTooLargeException(mMaxBytes);
+            }
+        }
+    }
+}
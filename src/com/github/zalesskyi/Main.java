@@ -1,5 +1,6 @@
 package com.github.zalesskyi;
 
+import com.github.zalesskyi.base.summarization.MorphologyUtil;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
@@ -11,11 +12,23 @@ public class Main {
         try {
             HttpServer server = HttpServer.create(new InetSocketAddress(Utils.Constants.PORT), 0);
             Utils.log("Server started at port: " + Utils.Constants.PORT);
-            server.createContext("/getAbstract", new GetAbstractHttpHandler());
+            RequestExecutor executor = new RequestExecutor();
+            SummaryService service = new SummaryService(new SummaryCache());
+            server.createContext("/getAbstract", new GetAbstractHttpHandler(executor, service));
+            server.createContext("/getAbstractBatch", new GetAbstractBatchHttpHandler(executor, service));
+            server.createContext("/status", new StatusHttpHandler(executor, service));
+            server.createContext("/metrics", new MetricsHttpHandler(executor, service));
             server.setExecutor(null);
             server.start();
         } catch (IOException exc) {
             Utils.errLog(exc.getMessage());
+            return;
+        }
+
+        try {
+            MorphologyUtil.preloadStopWords();
+        } catch (Exception exc) {
+            Utils.errLog("Can't preload stop words: " + exc.getMessage());
         }
     }
 }
@@ -0,0 +1,176 @@
+package com.github.zalesskyi;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Метрики обработки запросов: время этапов реферирования, размеры документов, обращения к БД.
+ * Гистограммы и счетчики создаются один раз (обычно в статических полях) и экспортируются
+ * в текстовом формате Prometheus (MetricsHttpHandler): гистограммы - как summary с процентилями.
+ *
+ * Метрика - семейство серий с одним именем, серии различаются метками (например, stage="sort").
+ */
+public class Metrics {
+    private static final String PREFIX = "text_abstracting_";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final Map<String, Family<Histogram>> SUMMARIES = new ConcurrentSkipListMap<>();
+    private static final Map<String, Family<LongAdder>> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Family<DoubleSupplier>> GAUGES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @param stage название этапа
+     * @return гистограмма времени этапа в наносекундах
+     */
+    public static Histogram stage(String stage) {
+        return timer("stage_seconds", "Time spent in each stage of request processing.", label("stage", stage));
+    }
+
+    /**
+     * @param name название метрики (без префикса, с суффиксом _seconds)
+     * @param help описание метрики
+     * @param labels метки серии (label()), пустая строка - без меток
+     * @return гистограмма времени в наносекундах (экспортируется в секундах)
+     */
+    public static Histogram timer(String name, String help, String labels) {
+        return series(SUMMARIES, name, help, NANOS_PER_SECOND).computeIfAbsent(labels, key -> new Histogram());
+    }
+
+    /**
+     * @param name название метрики (без префикса)
+     * @param help описание метрики
+     * @return гистограмма размеров
+     */
+    public static Histogram size(String name, String help) {
+        return series(SUMMARIES, name, help, 1).computeIfAbsent("", key -> new Histogram());
+    }
+
+    /**
+     * @param name название метрики (без префикса, с суффиксом _total)
+     * @param help описание метрики
+     * @param labels метки серии (label()), пустая строка - без меток
+     * @return счетчик
+     */
+    public static LongAdder counter(String name, String help, String labels) {
+        return series(COUNTERS, name, help, 1).computeIfAbsent(labels, key -> new LongAdder());
+    }
+
+    /**
+     * Регистрация показателя, значение которого читается при экспорте.
+     *
+     * @param name название метрики (без префикса)
+     * @param help описание метрики
+     * @param value источник значения
+     */
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        gauge(name, help, "", value);
+    }
+
+    /**
+     * Регистрация серии показателя, значение которого читается при экспорте.
+     *
+     * @param name название метрики (без префикса)
+     * @param help описание метрики
+     * @param labels метки серии (label())
+     * @param value источник значения
+     */
+    public static void gauge(String name, String help, String labels, DoubleSupplier value) {
+        series(GAUGES, name, help, 1).put(labels, value);
+    }
+
+    /**
+     * @return метка в формате Prometheus: name="value"
+     */
+    public static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * Запись всех метрик в текстовом формате Prometheus.
+     *
+     * @param out куда записывать
+     * @throws IOException ошибка записи
+     */
+    public static void writePrometheus(Appendable out) throws IOException {
+        for (Map.Entry<String, Family<Histogram>> family : SUMMARIES.entrySet()) {
+            String name = writeHeader(out, family.getKey(), family.getValue(), "summary");
+            for (Map.Entry<String, Histogram> series : family.getValue().mSeries.entrySet()) {
+                writeSummary(out, name, series.getKey(), series.getValue(), family.getValue().mDivisor);
+            }
+        }
+        for (Map.Entry<String, Family<LongAdder>> family : COUNTERS.entrySet()) {
+            String name = writeHeader(out, family.getKey(), family.getValue(), "counter");
+            for (Map.Entry<String, LongAdder> series : family.getValue().mSeries.entrySet()) {
+                out.append(name).append(braces(series.getKey())).append(' ')
+                        .append(Long.toString(series.getValue().sum())).append('\n');
+            }
+        }
+        for (Map.Entry<String, Family<DoubleSupplier>> family : GAUGES.entrySet()) {
+            String name = writeHeader(out, family.getKey(), family.getValue(), "gauge");
+            for (Map.Entry<String, DoubleSupplier> series : family.getValue().mSeries.entrySet()) {
+                out.append(name).append(braces(series.getKey())).append(' ')
+                        .append(format(series.getValue().getAsDouble())).append('\n');
+            }
+        }
+    }
+
+    private static <T> Map<String, T> series(Map<String, Family<T>> families, String name, String help,
+                                             double divisor) {
+        return families.computeIfAbsent(name, key -> new Family<>(help, divisor)).mSeries;
+    }
+
+    private static String writeHeader(Appendable out, String shortName, Family<?> family, String type)
+            throws IOException {
+        String name = PREFIX + shortName;
+        out.append("# HELP ").append(name).append(' ').append(family.mHelp).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return name;
+    }
+
+    /**
+     * Запись гистограммы как summary: процентили, сумма и количество значений.
+     *
+     * @param divisor делитель значений (например, 1e9 - наносекунды в секунды)
+     */
+    private static void writeSummary(Appendable out, String name, String labels, Histogram histogram,
+                                     double divisor) throws IOException {
+        long[] values = histogram.getValuesAtPercentiles(PERCENTILES);
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            out.append(name).append("{").append(prefix).append("quantile=\"")
+                    .append(QUANTILES[i]).append("\"} ")
+                    .append(format(values[i] / divisor)).append('\n');
+        }
+        String suffix = braces(labels) + " ";
+        out.append(name).append("_sum").append(suffix).append(format(histogram.getSum() / divisor)).append('\n');
+        out.append(name).append("_count").append(suffix).append(Long.toString(histogram.getCount())).append('\n');
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static final class Family<T> {
+        private final String mHelp;
+        private final double mDivisor;
+        private final Map<String, T> mSeries = new ConcurrentSkipListMap<>();
+
+        private Family(String help, double divisor) {
+            mHelp = help;
+            mDivisor = divisor;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.zalesskyi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Метрики в текстовом формате Prometheus: время этапов реферирования и размеры документов (Metrics),
+ * а также загрузка пула потоков обработки и статистика кэша результатов.
+ */
+public class MetricsHttpHandler implements HttpHandler {
+    private static final String PREFIX = "text_abstracting_";
+
+    private final RequestExecutor mExecutor;
+    private final SummaryService mService;
+
+    public MetricsHttpHandler(RequestExecutor executor, SummaryService service) {
+        mExecutor = executor;
+        mService = service;
+    }
+
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+        try (Writer out = HttpMessages.openResponseWriter(httpExchange, Utils.Constants.HTTP_OK,
+                "text/plain; version=0.0.4; charset=utf-8")) {
+            Metrics.writePrometheus(out);
+
+            SummaryCache cache = mService.getCache();
+            writeValue(out, "gauge", "active_workers", "Busy request workers.", mExecutor.getActiveWorkers());
+            writeValue(out, "gauge", "queue_size", "Requests waiting for a worker.", mExecutor.getQueueSize());
+            writeValue(out, "counter", "requests_completed_total", "Processed requests.",
+                    mExecutor.getCompletedCount());
+            writeValue(out, "counter", "requests_rejected_total", "Requests rejected with 503.",
+                    mExecutor.getRejectedCount());
+            writeValue(out, "counter", "cache_hits_total", "Summary cache hits.", cache.getHitCount());
+            writeValue(out, "counter", "cache_misses_total", "Summary cache misses.", cache.getMissCount());
+            writeValue(out, "gauge", "cache_bytes", "Approximate summary cache size.", cache.getBytes());
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    private static void writeValue(Writer out, String type, String name, String help, long value)
+            throws IOException {
+        out.write("# HELP " + PREFIX + name + " " + help + "\n");
+        out.write("# TYPE " + PREFIX + name + " " + type + "\n");
+        out.write(PREFIX + name + " " + value + "\n");
+    }
+}
@@ -1,89 +1,184 @@
 package com.github.zalesskyi;
 
+import com.github.zalesskyi.base.database.DbMetrics;
 import com.github.zalesskyi.base.summarization.Dictionary;
 import com.github.zalesskyi.base.summarization.FullText;
+import com.github.zalesskyi.base.summarization.MorphologyUtil;
 import com.github.zalesskyi.base.summarization.Word;
+import com.github.zalesskyi.model.Request;
 import com.sun.net.httpserver.HttpExchange;
 
 import java.io.*;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 
 /**
- * Поток обработки текста.
- * Для каждого запроса создается свой поток обработки.
+ * Обработка текста.
+ * Для каждого запроса создается своя задача обработки,
+ * которая выполняется в пуле потоков обработки (RequestExecutor).
+ *
+ * Результат берется из кэша результатов или вычисляется (SummaryService) и отдается клиенту с ETag.
+ * Если у клиента уже есть этот результат (If-None-Match), ему сразу отвечают 304 без тела:
+ * ETag определяется запросом и версией морфологических данных (SummaryCache.etagOf), поэтому реферировать
+ * текст для этого не нужно.
+ * Приблизительный результат (Summary.isDegraded) отдается всегда, без ETag.
+ *
+ * Время каждого этапа и размеры документа записываются в метрики (Metrics).
  */
 public class ProcessThread implements Runnable {
+    private static final Histogram SUMMARY_TIME = Metrics.stage("summary");
+    private static final Histogram ANALYSIS_TIME = Metrics.stage("analysis");
+    private static final Histogram COMPRESS_AND_STEM_TIME = Metrics.stage("compress_and_stem");
+    private static final Histogram SORT_TIME = Metrics.stage("sort");
+    private static final Histogram MAIN_WORDS_TIME = Metrics.stage("main_basic_words");
+    private static final Histogram SECONDARY_WORDS_TIME = Metrics.stage("secondary_basic_words");
+    private static final Histogram KEY_SENTENCES_ADDRESSES_TIME = Metrics.stage("key_sentences_addresses");
+    private static final Histogram KEY_SENTENCES_TIME = Metrics.stage("key_sentences");
+    private static final Histogram SEND_TIME = Metrics.stage("send_data");
 
-    private String mSource;
-    private Thread mThread;
+    private static final Histogram DOCUMENT_CHARS = Metrics.size("document_chars", "Source text length in chars.");
+    private static final Histogram DOCUMENT_TOKENS = Metrics.size("document_tokens", "Source text length in words.");
+    private static final Histogram VOCABULARY_WORDS = Metrics.size("vocabulary_words",
+            "Distinct words after stop-word removal.");
+    private static final Histogram SUMMARY_CHARS = Metrics.size("summary_chars", "Summary length in chars.");
+    private static final Histogram DB_QUERIES = Metrics.size("db_queries_per_request",
+            "Database queries issued while summarizing one text.");
+
+    private Request mRequest;
     private HttpExchange mHttpExchange;
+    private SummaryService mService;
 
-    public ProcessThread(String source, HttpExchange httpExchange) throws IOException {
-        mSource = source;
+    public ProcessThread(Request request, HttpExchange httpExchange, SummaryService service) {
+        mRequest = request;
         mHttpExchange = httpExchange;
-
-        mThread = new Thread(this);
-        mThread.start();
+        mService = service;
     }
 
     @Override
     public void run() {
-        FullText fText = new FullText(prepareData(mSource));
+        String key = SummaryCache.keyOf(mRequest);
+        String etag = SummaryCache.etagOf(key);
+        String ifNoneMatch = mHttpExchange.getRequestHeaders().getFirst("If-None-Match");
+        try {
+            if (SummaryCache.matches(ifNoneMatch, etag)) {
+                sendNotModified(etag);
+            } else {
+                long start = System.nanoTime();
+                Summary summary = mService.getSummary(mRequest, key);
+                SUMMARY_TIME.recordSince(start);
+                sendData(summary.getText(), summary.isDegraded() ? null : etag);
+            }
+        } catch (TimeoutException exc) {
+            Utils.warn("Same request is still in progress: " + key);
+            sendError(Utils.Constants.HTTP_SERVICE_UNAVAILABLE);
+        } catch (Exception exc) {
+            exc.printStackTrace();
+            sendError(Utils.Constants.HTTP_INTERNAL_ERROR);
+        }
+
+        closeConnection();
+    }
+
+    /**
+     * Реферирование текста.
+     *
+     * @param source исходный текст
+     * @return ключевые предложения текста
+     */
+    static String summarize(String source) {
+        long dbQueries = DbMetrics.getThreadQueryCount();
+        long start = System.nanoTime();
+        FullText fText = new FullText(source);
         Dictionary dictionary = fText.getAllWords();
-        Utils.log(Integer.toString(dictionary.size()));
-        dictionary.compression();
-        dictionary.stemming();
-        Utils.log(dictionary.toString());
+        start = record(ANALYSIS_TIME, start);
+        DOCUMENT_CHARS.record(source.length());
+        DOCUMENT_TOKENS.record(fText.getWordsCount());
+        VOCABULARY_WORDS.record(dictionary.size());
+        Utils.debug(() -> Integer.toString(dictionary.size()));
+        dictionary.compressAndStem();
+        start = record(COMPRESS_AND_STEM_TIME, start);
+        Utils.debug(dictionary::toString);
         dictionary.sort();
+        start = record(SORT_TIME, start);
         List<Word> mainWords = dictionary.getMainBasicWords();
+        start = record(MAIN_WORDS_TIME, start);
+        Utils.debug(MorphologyUtil::getPartOfSpeechCacheStats);
         List<Word> secondaryWords = dictionary.getSecondaryBasicWords();
-        Utils.log("---------------");
-        mainWords.forEach(item -> Utils.log(item.toString()));
-        Utils.log("---------------");
-        secondaryWords.forEach(System.out::println);
-        Utils.log("---------------------------------");
+        start = record(SECONDARY_WORDS_TIME, start);
+        Utils.debug(() -> "---------------\n" + join(mainWords) + "---------------\n" + join(secondaryWords)
+                + "---------------------------------");
         Map<Integer, Set<Integer>> keySentencesAddr = dictionary.getKeySentencesAddresses();
+        start = record(KEY_SENTENCES_ADDRESSES_TIME, start);
         String keySentences = fText.getKeySentences(keySentencesAddr);
-        Utils.log(keySentences);
-        Utils.log(Integer.toString(keySentences.length()));
-
-        sendData(keySentences);
-
-        closeConnection();
+        record(KEY_SENTENCES_TIME, start);
+        SUMMARY_CHARS.record(keySentences.length());
+        DB_QUERIES.record(DbMetrics.getThreadQueryCount() - dbQueries);
+        Utils.debug(keySentences);
+        Utils.debug(() -> Integer.toString(keySentences.length()));
+        return keySentences;
     }
 
-
     /**
-     * Подготовка данных, принятых от клиента.
-     * @param text данные от клиента
-     * @return читаемая обработчиком строка,
-     * которую можно реферировать. (Абзацы отделены друг от друга метасимволами)
+     * Запись времени этапа.
+     *
+     * @return время окончания этапа (начало следующего)
      */
-    private String prepareData(String text) {
-        return text.replaceAll("\\. ?\n", Utils.Constants.NEW_PARAGRAPH_MARKER_REGEX);
+    private static long record(Histogram stage, long start) {
+        long end = System.nanoTime();
+        stage.record(end - start);
+        return end;
     }
 
+    private static String join(List<Word> words) {
+        StringBuilder text = new StringBuilder();
+        for (Word word : words) {
+            text.append(word).append('\n');
+        }
+        return text.toString();
+    }
+
+
     /**
      * Отправка данных клиенту.
+     * Результат кодируется в UTF-8 (и сжимается, если клиент поддерживает gzip) сразу в поток ответа.
      *
      * @param result Результат реферирования.
+     * @param etag ETag результата, null - без ETag
      */
-    private void sendData(String result) {
-        try (BufferedOutputStream out = new BufferedOutputStream(mHttpExchange.getResponseBody())) {
-            try (ByteArrayInputStream bis = new ByteArrayInputStream(result.getBytes())) {
-                mHttpExchange.sendResponseHeaders(Utils.Constants.HTTP_OK, 0);
-                byte [] buffer = new byte [1024];
-                int count ;
-                while ((count = bis.read(buffer)) != -1) {
-                    out.write(buffer, 0, count);
-                }
-            }
+    private void sendData(String result, String etag) {
+        if (etag != null) {
+            mHttpExchange.getResponseHeaders().set("ETag", etag);
+        }
+        long start = System.nanoTime();
+        try (Writer out = HttpMessages.openResponseWriter(mHttpExchange, Utils.Constants.HTTP_OK,
+                "text/plain; charset=utf-8")) {
+            out.write(result);
         } catch (IOException exc) {
             exc.printStackTrace();
         }
+        SEND_TIME.recordSince(start);
+    }
+
+    /**
+     * Ответ 304: у клиента уже есть актуальный результат.
+     *
+     * @param etag ETag результата
+     */
+    private void sendNotModified(String etag) {
+        mHttpExchange.getResponseHeaders().set("ETag", etag);
+        HttpMessages.sendEmptyResponse(mHttpExchange, Utils.Constants.HTTP_NOT_MODIFIED);
+    }
+
+    /**
+     * Ответ с ошибкой (без тела).
+     *
+     * @param code код ответа
+     */
+    private void sendError(int code) {
+        HttpMessages.sendEmptyResponse(mHttpExchange, code);
     }
 
     private void closeConnection() {
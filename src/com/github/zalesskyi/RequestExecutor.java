@@ -0,0 +1,120 @@
+package com.github.zalesskyi;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул потоков обработки запросов.
+ *
+ * Количество потоков и длина очереди ограничены, поэтому всплеск запросов не создает
+ * всплеска потоков, конкурирующих за соединения с БД. Если все потоки заняты и очередь
+ * заполнена, задача сразу отклоняется - клиенту отвечают 503 с заголовком Retry-After.
+ *
+ * Настройки (системные свойства):
+ *  textAbstracting.workers - количество потоков обработки
+ *  textAbstracting.queueCapacity - длина очереди ожидающих запросов
+ */
+public class RequestExecutor {
+    private static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final int mQueueCapacity;
+    private final LongAdder mRejected = new LongAdder();
+
+    public RequestExecutor() {
+        this(Integer.getInteger("textAbstracting.workers", DEFAULT_WORKERS),
+                Integer.getInteger("textAbstracting.queueCapacity", DEFAULT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * @param workers количество потоков обработки
+     * @param queueCapacity длина очереди ожидающих запросов
+     */
+    public RequestExecutor(int workers, int queueCapacity) {
+        mQueueCapacity = queueCapacity;
+        mExecutor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new WorkerThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Постановка задачи в очередь.
+     *
+     * @param task задача
+     * @return false, если пул перегружен и задача отклонена
+     */
+    public boolean execute(Runnable task) {
+        try {
+            mExecutor.execute(task);
+            return true;
+        } catch (RejectedExecutionException exc) {
+            mRejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * @return количество запросов в очереди
+     */
+    public int getQueueSize() {
+        return mExecutor.getQueue().size();
+    }
+
+    /**
+     * @return длина очереди
+     */
+    public int getQueueCapacity() {
+        return mQueueCapacity;
+    }
+
+    /**
+     * @return количество потоков, занятых обработкой запросов
+     */
+    public int getActiveWorkers() {
+        return mExecutor.getActiveCount();
+    }
+
+    /**
+     * @return количество потоков обработки
+     */
+    public int getMaxWorkers() {
+        return mExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return количество обработанных запросов
+     */
+    public long getCompletedCount() {
+        return mExecutor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return количество отклоненных запросов
+     */
+    public long getRejectedCount() {
+        return mRejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "workers: " + getActiveWorkers() + "/" + getMaxWorkers()
+                + " queue: " + getQueueSize() + "/" + getQueueCapacity()
+                + " completed: " + getCompletedCount()
+                + " rejected: " + getRejectedCount();
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "abstract-worker-" + mCount.incrementAndGet());
+        }
+    }
+}
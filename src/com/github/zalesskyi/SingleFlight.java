@@ -0,0 +1,117 @@
+package com.github.zalesskyi;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Объединение одинаковых одновременных вычислений.
+ *
+ * Первый запрос с данным ключом (ведущий) выполняет вычисление в своем потоке,
+ * остальные запросы с тем же ключом, пришедшие до его окончания, ждут и получают тот же результат.
+ * Ведущий не зависит от своего клиента: вычисление доводится до конца, даже если клиент ведущего
+ * уже отключился, поэтому ожидающие всегда получают результат.
+ * Если вычисление ведущего было отменено (поток прерван), ожидающие не получают ошибку -
+ * один из них становится новым ведущим и повторяет вычисление.
+ * Ожидающий, который не дождался результата за отведенное время, просто перестает ждать,
+ * не влияя на ведущего и остальных.
+ *
+ * @param <V> тип результата
+ */
+public class SingleFlight<V> {
+    private final ConcurrentHashMap<String, CompletableFuture<V>> mInFlight = new ConcurrentHashMap<>();
+    private final long mTimeoutMillis;
+
+    private final LongAdder mLeaders = new LongAdder();
+    private final LongAdder mFollowers = new LongAdder();
+    private final LongAdder mTimeouts = new LongAdder();
+
+    /**
+     * @param timeoutMillis максимальное время ожидания результата чужого вычисления
+     */
+    public SingleFlight(long timeoutMillis) {
+        mTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Выполнение вычисления или присоединение к такому же уже выполняемому вычислению.
+     *
+     * @param key ключ вычисления
+     * @param computation вычисление
+     * @return результат
+     * @throws TimeoutException если результат чужого вычисления не получен за отведенное время
+     * @throws Exception ошибка вычисления
+     */
+    public V execute(String key, Callable<V> computation) throws Exception {
+        while (true) {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> existing = mInFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                mLeaders.increment();
+                return lead(key, flight, computation);
+            }
+
+            mFollowers.increment();
+            try {
+                return existing.get(mTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (CancellationException exc) {
+                // вычисление ведущего отменено - пробуем еще раз
+            } catch (TimeoutException exc) {
+                mTimeouts.increment();
+                throw exc;
+            } catch (ExecutionException exc) {
+                Throwable cause = exc.getCause();
+                throw cause instanceof Exception ? (Exception) cause : exc;
+            }
+        }
+    }
+
+    private V lead(String key, CompletableFuture<V> flight, Callable<V> computation) throws Exception {
+        try {
+            V result = computation.call();
+            flight.complete(result);
+            return result;
+        } catch (InterruptedException | CancellationException exc) {
+            flight.cancel(false);
+            throw exc;
+        } catch (Exception | Error exc) {
+            flight.completeExceptionally(exc);
+            throw exc;
+        } finally {
+            mInFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return количество выполняемых вычислений
+     */
+    public int getInFlightCount() {
+        return mInFlight.size();
+    }
+
+    /**
+     * @return количество вычислений, выполненных ведущими
+     */
+    public long getLeaderCount() {
+        return mLeaders.sum();
+    }
+
+    /**
+     * @return количество запросов, присоединившихся к чужому вычислению
+     */
+    public long getFollowerCount() {
+        return mFollowers.sum();
+    }
+
+    /**
+     * @return количество запросов, не дождавшихся чужого вычисления
+     */
+    public long getTimeoutCount() {
+        return mTimeouts.sum();
+    }
+}
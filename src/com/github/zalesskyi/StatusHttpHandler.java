@@ -0,0 +1,53 @@
+package com.github.zalesskyi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Состояние сервера: загрузка пула потоков обработки (занятые потоки, длина очереди,
+ * количество обработанных и отклоненных запросов), статистика кэша результатов
+ * и объединения одинаковых запросов, количество отброшенных сообщений журнала.
+ */
+public class StatusHttpHandler implements HttpHandler {
+
+    private final RequestExecutor mExecutor;
+    private final SummaryService mService;
+
+    public StatusHttpHandler(RequestExecutor executor, SummaryService service) {
+        mExecutor = executor;
+        mService = service;
+    }
+
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+        SummaryCache cache = mService.getCache();
+        SingleFlight<Summary> flights = mService.getFlights();
+        String status = "{\"activeWorkers\":" + mExecutor.getActiveWorkers()
+                + ",\"maxWorkers\":" + mExecutor.getMaxWorkers()
+                + ",\"queueSize\":" + mExecutor.getQueueSize()
+                + ",\"queueCapacity\":" + mExecutor.getQueueCapacity()
+                + ",\"completed\":" + mExecutor.getCompletedCount()
+                + ",\"rejected\":" + mExecutor.getRejectedCount()
+                + ",\"logDropped\":" + Utils.getDroppedLogCount()
+                + ",\"cache\":{\"entries\":" + cache.size()
+                + ",\"bytes\":" + cache.getBytes()
+                + ",\"maxBytes\":" + cache.getMaxBytes()
+                + ",\"hits\":" + cache.getHitCount()
+                + ",\"misses\":" + cache.getMissCount()
+                + ",\"evictions\":" + cache.getEvictionCount() + "}"
+                + ",\"singleFlight\":{\"inFlight\":" + flights.getInFlightCount()
+                + ",\"leaders\":" + flights.getLeaderCount()
+                + ",\"followers\":" + flights.getFollowerCount()
+                + ",\"timeouts\":" + flights.getTimeoutCount() + "}}";
+        byte[] body = status.getBytes(StandardCharsets.UTF_8);
+        httpExchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        httpExchange.sendResponseHeaders(Utils.Constants.HTTP_OK, body.length);
+        try (OutputStream out = httpExchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.zalesskyi;
+
+/**
+ * Результат реферирования (SummaryService).
+ *
+ * Приблизительный результат (части речи определялись без БД - она была перегружена или недоступна,
+ * или не удалось загрузить стоп-слова)
+ * не кэшируется и отдается без ETag: повторный запрос должен получить полный результат,
+ * как только БД станет доступна.
+ */
+public class Summary {
+    private final String mText;
+    private final boolean mDegraded;
+
+    /**
+     * @param text ключевые предложения текста
+     * @param degraded true, если результат приблизительный
+     */
+    public Summary(String text, boolean degraded) {
+        mText = text;
+        mDegraded = degraded;
+    }
+
+    public String getText() {
+        return mText;
+    }
+
+    public boolean isDegraded() {
+        return mDegraded;
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.zalesskyi;
+
+import com.github.zalesskyi.base.database.MorphologyRepositories;
+import com.github.zalesskyi.model.Request;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш результатов реферирования.
+ *
+ * Ключ - SHA-256 от текста запроса и коэффициента (Request.source, Request.cofficient),
+ * поэтому одинаковые запросы получают один и тот же ключ.
+ * ETag результата - ключ и версия морфологических данных (MorphologyRepositories.getDataVersion):
+ * результат определяется текстом, коэффициентом и данными, поэтому совпадение ETag можно проверить
+ * до реферирования, а после обновления данных прежние ETag клиентов не совпадают.
+ * Размер кэша ограничен суммарным (приблизительным) объемом результатов в байтах,
+ * при переполнении вытесняются давно не запрашиваемые результаты (LRU).
+ * Время жизни записи можно ограничить.
+ *
+ * Настройки (системные свойства):
+ *  textAbstracting.resultCacheBytes - максимальный объем кэша в байтах (0 - кэш отключен)
+ *  textAbstracting.resultCacheTtlSeconds - время жизни записи в секундах (0 - не ограничено)
+ */
+public class SummaryCache {
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int ENTRY_OVERHEAD_BYTES = 128;           // ключ, запись LinkedHashMap, объект String
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxBytes;
+    private final long mTtlNanos;
+    private long mBytes;
+
+    private final LongAdder mHits = new LongAdder();
+    private final LongAdder mMisses = new LongAdder();
+    private final LongAdder mEvictions = new LongAdder();
+
+    public SummaryCache() {
+        this(Long.getLong("textAbstracting.resultCacheBytes", DEFAULT_MAX_BYTES),
+                Long.getLong("textAbstracting.resultCacheTtlSeconds", 0L));
+    }
+
+    /**
+     * @param maxBytes максимальный объем кэша в байтах (0 - кэш отключен)
+     * @param ttlSeconds время жизни записи в секундах (0 - не ограничено)
+     */
+    public SummaryCache(long maxBytes, long ttlSeconds) {
+        mMaxBytes = maxBytes;
+        mTtlNanos = ttlSeconds > 0 ? ttlSeconds * 1_000_000_000L : Long.MAX_VALUE;
+    }
+
+    /**
+     * @param request запрос
+     * @return ключ кэша (SHA-256 в шестнадцатеричном виде)
+     */
+    public static String keyOf(Request request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getSource().getBytes(StandardCharsets.UTF_8));
+            int cofficient = request.getCofficient();
+            digest.update(new byte[]{(byte) (cofficient >>> 24), (byte) (cofficient >>> 16),
+                    (byte) (cofficient >>> 8), (byte) cofficient});
+            StringBuilder key = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    /**
+     * @param key ключ кэша
+     * @return значение заголовка ETag для результата
+     */
+    public static String etagOf(String key) {
+        return "\"" + key + "-" + MorphologyRepositories.getDataVersion() + "\"";
+    }
+
+    /**
+     * @param ifNoneMatch значение заголовка If-None-Match (может быть null)
+     * @param etag ETag результата
+     * @return true, если у клиента уже есть этот результат
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param key ключ кэша
+     * @return результат, null если его нет в кэше (или истекло время жизни)
+     */
+    public synchronized String get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry != null && System.nanoTime() - entry.mCreated > mTtlNanos) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            mMisses.increment();
+            return null;
+        }
+        mHits.increment();
+        return entry.mSummary;
+    }
+
+    /**
+     * Сохранение результата. Если результат не помещается в кэш целиком, он не сохраняется.
+     *
+     * @param key ключ кэша
+     * @param summary результат реферирования
+     */
+    public synchronized void put(String key, String summary) {
+        long size = sizeOf(key, summary);
+        if (size > mMaxBytes) {
+            return;
+        }
+        remove(key);
+        mEntries.put(key, new Entry(summary, size));
+        mBytes += size;
+
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            mBytes -= iterator.next().getValue().mSize;
+            iterator.remove();
+            mEvictions.increment();
+        }
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized long getBytes() {
+        return mBytes;
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public long getHitCount() {
+        return mHits.sum();
+    }
+
+    public long getMissCount() {
+        return mMisses.sum();
+    }
+
+    public long getEvictionCount() {
+        return mEvictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "summary cache: entries " + size() + " bytes " + getBytes() + "/" + getMaxBytes()
+                + " hits " + getHitCount() + " misses " + getMissCount() + " evictions " + getEvictionCount();
+    }
+
+    private void remove(String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mBytes -= entry.mSize;
+        }
+    }
+
+    private static long sizeOf(String key, String summary) {
+        return ENTRY_OVERHEAD_BYTES + 2L * (key.length() + summary.length());
+    }
+
+    private static final class Entry {
+        private final String mSummary;
+        private final long mSize;
+        private final long mCreated = System.nanoTime();
+
+        private Entry(String summary, long size) {
+            mSummary = summary;
+            mSize = size;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.zalesskyi;
+
+import com.github.zalesskyi.base.summarization.MorphologyUtil;
+import com.github.zalesskyi.model.Request;
+
+/**
+ * Получение результатов реферирования.
+ * Результат берется из кэша результатов (SummaryCache), а если его там нет - вычисляется.
+ * Одинаковые одновременные запросы (с одним ключом кэша) объединяются в одно вычисление (SingleFlight).
+ * Приблизительный результат (Summary.isDegraded) в кэш не сохраняется.
+ *
+ * Настройки (системные свойства):
+ *  textAbstracting.singleFlightTimeoutSeconds - сколько запрос ждет результата такого же
+ *  уже выполняемого запроса
+ */
+public class SummaryService {
+    private static final long DEFAULT_SINGLE_FLIGHT_TIMEOUT_SECONDS = 60;
+
+    private final SummaryCache mCache;
+    private final SingleFlight<Summary> mFlights;
+
+    public SummaryService(SummaryCache cache) {
+        this(cache, new SingleFlight<>(1000 * Long.getLong("textAbstracting.singleFlightTimeoutSeconds",
+                DEFAULT_SINGLE_FLIGHT_TIMEOUT_SECONDS)));
+    }
+
+    public SummaryService(SummaryCache cache, SingleFlight<Summary> flights) {
+        mCache = cache;
+        mFlights = flights;
+    }
+
+    /**
+     * @param request запрос
+     * @param key ключ кэша запроса (SummaryCache.keyOf)
+     * @return результат реферирования
+     * @throws java.util.concurrent.TimeoutException если такой же выполняемый запрос не завершился
+     *         за отведенное время
+     * @throws Exception ошибка реферирования
+     */
+    public Summary getSummary(Request request, String key) throws Exception {
+        String cached = mCache.get(key);
+        if (cached != null) {
+            return new Summary(cached, false);
+        }
+        return mFlights.execute(key, () -> {                    // вычисление - в потоке ведущего
+            long degraded = MorphologyUtil.getThreadDegradedCount();
+            String text = ProcessThread.summarize(request.getSource());
+            Summary result = new Summary(text, MorphologyUtil.getThreadDegradedCount() != degraded);
+            if (!result.isDegraded()) {
+                mCache.put(key, text);
+            }
+            return result;
+        });
+    }
+
+    public SummaryCache getCache() {
+        return mCache;
+    }
+
+    public SingleFlight<Summary> getFlights() {
+        return mFlights;
+    }
+}
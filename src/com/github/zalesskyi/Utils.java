@@ -1,44 +1,62 @@
 package com.github.zalesskyi;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-
-import static com.github.zalesskyi.Utils.Constants.LOG_FILE_NAME;
+import java.util.function.Supplier;
 
 
 public class Utils {
     public static class Constants {
-        public static final String NEW_PARAGRAPH_MARKER_REGEX = "\\$_\\$_\\$";
-        public static final String NEW_PARAGRAPH_MARKER = "$_$_$";
-
-        public static final String LOG_FILE_NAME = "D://textAbstact_logs.txt";
+        public static final String LOG_FILE_NAME = "D://textAbstact_logs.txt";   // по умолчанию, см. AsyncLog
 
         public static final int PORT = 8080;
         public static final int HTTP_OK = 200;
+        public static final int HTTP_NOT_MODIFIED = 304;
+        public static final int HTTP_BAD_REQUEST = 400;
+        public static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+        public static final int HTTP_INTERNAL_ERROR = 500;
+        public static final int HTTP_SERVICE_UNAVAILABLE = 503;
+
+        public static final int RETRY_AFTER_SECONDS = Integer.getInteger("textAbstracting.retryAfterSeconds", 1);
     }
 
-    private static FileOutputStream logStream;
+    private static final AsyncLog LOG = new AsyncLog();
 
-    static {
-        try {
-            logStream = new FileOutputStream(LOG_FILE_NAME, false);
-        } catch (FileNotFoundException exc) {
-            exc.printStackTrace();
-        }
+    /**
+     * Информационное сообщение.
+     */
+    public static final void log(String logMessage) {
+        LOG.log(AsyncLog.Level.INFO, logMessage);
     }
 
-    public static final void log(String logMessage) {
-        System.out.println(logMessage);
-        logMessage += "\r\n";
-        try {
-            logStream.write(logMessage.getBytes());
-        } catch (IOException exc) {
-            exc.printStackTrace();
+    /**
+     * Отладочное сообщение. Строка сообщения обычно уже построена, поэтому для дорогих
+     * сообщений следует использовать debug(Supplier).
+     */
+    public static final void debug(String logMessage) {
+        LOG.log(AsyncLog.Level.DEBUG, logMessage);
+    }
+
+    /**
+     * Отладочное сообщение, которое строится, только если уровень DEBUG включен.
+     */
+    public static final void debug(Supplier<String> logMessage) {
+        if (LOG.isEnabled(AsyncLog.Level.DEBUG)) {
+            LOG.log(AsyncLog.Level.DEBUG, logMessage.get());
         }
     }
 
+    public static final boolean isDebugEnabled() {
+        return LOG.isEnabled(AsyncLog.Level.DEBUG);
+    }
+
+    public static final void warn(String warnMessage) {
+        LOG.log(AsyncLog.Level.WARN, warnMessage);
+    }
+
     public static final void errLog(String errMessage) {
-        System.err.println(errMessage);
+        LOG.log(AsyncLog.Level.ERROR, errMessage);
+    }
+
+    public static long getDroppedLogCount() {
+        return LOG.getDroppedCount();
     }
 }
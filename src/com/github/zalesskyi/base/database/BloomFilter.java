@@ -0,0 +1,77 @@
+package com.github.zalesskyi.base.database;
+
+/**
+ * Фильтр Блума для слов.
+ *
+ * mightContain возвращает false, только если слова точно нет в множестве,
+ * и true - если слово есть или (с вероятностью не больше заданной) его нет.
+ * Позиции битов - двойное хэширование 64-битного хэша слова.
+ * После заполнения фильтр только читается, поэтому его можно использовать из нескольких потоков.
+ */
+class BloomFilter {
+    private final long[] bits;
+    private final long bitsCount;
+    private final int hashesCount;
+
+    /**
+     * @param expectedWords ожидаемое количество слов
+     * @param falsePositiveRate допустимая вероятность ложного срабатывания
+     */
+    BloomFilter(long expectedWords, double falsePositiveRate) {
+        long n = Math.max(1, expectedWords);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = new long[(int) Math.max(1, (m + 63) >>> 6)];
+        bitsCount = (long) bits.length << 6;
+        hashesCount = Math.max(1, (int) Math.round((double) bitsCount / n * Math.log(2)));
+    }
+
+    void put(String word) {
+        long hash = hash(word);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashesCount; i++) {
+            long bit = index(h1 + i * h2);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(String word) {
+        long hash = hash(word);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashesCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return размер фильтра в байтах
+     */
+    long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    private long index(int combinedHash) {
+        return (combinedHash & 0xFFFFFFFFL) % bitsCount;
+    }
+
+    /**
+     * 64-битный хэш символов слова (FNV-1a с перемешиванием, как в SplitMix64).
+     */
+    private static long hash(String word) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash ^= word.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 30;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 27;
+        hash *= 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.zalesskyi.base.database;
+
+import com.github.zalesskyi.Histogram;
+import com.github.zalesskyi.Metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивное ограничение количества одновременных запросов к БД (AIMD).
+ *
+ * Пока запросы выполняются быстрее целевого времени, предел растет на 1 за каждые limit запросов
+ * (аддитивное увеличение). Если запрос выполнялся дольше целевого времени или завершился ошибкой,
+ * БД считается перегруженной и предел умножается на backoffRatio (мультипликативное уменьшение),
+ * но не чаще одного раза за целевое время - иначе пачка медленных запросов, начатых одновременно,
+ * сбросила бы предел до минимума.
+ *
+ * Запрос, для которого нет свободного места, ждет не дольше maxWait и получает DatabaseBusyException,
+ * вместо того чтобы ждать соединение из пула неограниченно долго.
+ *
+ * Настройки (системные свойства):
+ *  textAbstracting.db.limiter.enabled - включено ли ограничение
+ *  textAbstracting.db.limiter.minLimit, textAbstracting.db.limiter.maxLimit - границы предела
+ *                                       (по умолчанию максимум - размер пула соединений)
+ *  textAbstracting.db.limiter.targetLatencyMillis - целевое время запроса
+ *  textAbstracting.db.limiter.maxWaitMillis - максимальное время ожидания места
+ *  textAbstracting.db.limiter.backoffRatio - во сколько раз уменьшается предел при перегрузке
+ */
+class ConcurrencyLimiter {
+    private static final String PROPERTY_PREFIX = "textAbstracting.db.limiter.";
+
+    private static final Histogram WAIT = Metrics.timer("db_limiter_wait_seconds",
+            "Time spent waiting for the database concurrency limiter.", "");
+    private static final LongAdder REJECTED = Metrics.counter("db_limiter_rejected_total",
+            "Database queries rejected by the concurrency limiter.", "");
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final long maxWaitNanos;
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long lastDecrease = System.nanoTime();
+
+    /**
+     * @param poolSize размер пула соединений (предел по умолчанию)
+     */
+    ConcurrencyLimiter(int poolSize) {
+        enabled = Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "enabled", "true"));
+        maxLimit = Math.max(1, Integer.getInteger(PROPERTY_PREFIX + "maxLimit", poolSize));
+        minLimit = Math.max(1, Math.min(maxLimit, Integer.getInteger(PROPERTY_PREFIX + "minLimit", 1)));
+        targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(PROPERTY_PREFIX + "targetLatencyMillis", 50));
+        maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(PROPERTY_PREFIX + "maxWaitMillis", 100));
+        backoffRatio = Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "backoffRatio", "0.9"));
+        limit = maxLimit;
+
+        Metrics.gauge("db_limiter_limit", "Current database concurrency limit.", this::getLimit);
+        Metrics.gauge("db_limiter_in_flight", "Database queries holding a concurrency limiter permit.",
+                this::getInFlight);
+    }
+
+    /**
+     * Получение места для запроса. Ожидание ограничено maxWait.
+     *
+     * @throws DatabaseBusyException если место не освободилось за maxWait или поток был прерван.
+     */
+    void acquire() throws DatabaseBusyException {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            long remaining = maxWaitNanos;
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    REJECTED.increment();
+                    throw new DatabaseBusyException();
+                }
+                try {
+                    remaining = released.awaitNanos(remaining);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    REJECTED.increment();
+                    throw new DatabaseBusyException();
+                }
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+            WAIT.recordSince(start);
+        }
+    }
+
+    /**
+     * Освобождение места и корректировка предела по результату запроса.
+     *
+     * @param latencyNanos время выполнения запроса
+     * @param failed true, если запрос завершился ошибкой
+     */
+    void release(long latencyNanos, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            if (failed || latencyNanos > targetLatencyNanos) {
+                if (now - lastDecrease >= targetLatencyNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecrease = now;
+                }
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
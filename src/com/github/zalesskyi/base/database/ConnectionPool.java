@@ -4,33 +4,133 @@ import org.apache.commons.dbcp.ConnectionFactory;
 import org.apache.commons.dbcp.DriverManagerConnectionFactory;
 import org.apache.commons.dbcp.PoolableConnectionFactory;
 import org.apache.commons.dbcp.PoolingDataSource;
+import org.apache.commons.pool.KeyedObjectPoolFactory;
+import org.apache.commons.pool.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool.impl.GenericKeyedObjectPoolFactory;
 import org.apache.commons.pool.impl.GenericObjectPool;
 
 import javax.sql.DataSource;
+import java.util.Properties;
 
 /**
  * Класс, предоставляющий пул соединений с БД.
+ *
+ * Каждое соединение кэширует свои PreparedStatement (по тексту запроса), поэтому повторный
+ * prepareStatement с тем же запросом возвращает уже подготовленный оператор, а закрытие оператора
+ * возвращает его в кэш соединения. Драйвер PostgreSQL после prepareThreshold выполнений оператора
+ * переходит на подготовленный на сервере запрос, и повторные запросы не разбираются и не планируются заново.
+ *
+ * Настройки (системные свойства):
+ *  textAbstracting.db.url, textAbstracting.db.user, textAbstracting.db.password - подключение к БД
+ *  textAbstracting.db.maxActive - максимальное количество соединений (для каждой реплики - свой пул)
+ *  textAbstracting.db.minIdle, textAbstracting.db.maxIdle - сколько свободных соединений держать открытыми
+ *  textAbstracting.db.maxWaitMillis - максимальное время ожидания свободного соединения (-1 - без ограничения)
+ *  textAbstracting.db.validationQuery - запрос проверки соединения (пустая строка - не проверять)
+ *  textAbstracting.db.testOnBorrow - проверять соединение при получении из пула
+ *  textAbstracting.db.evictionIntervalMillis - период проверки и закрытия свободных соединений (0 - не проверять)
+ *  textAbstracting.db.poolPreparedStatements - кэшировать PreparedStatement в соединениях
+ *  textAbstracting.db.maxOpenPreparedStatements - максимальное количество операторов в кэше соединения
+ *  textAbstracting.db.prepareThreshold - после скольких выполнений оператор подготавливается на сервере
  */
 public class ConnectionPool {
+    private static final String PROPERTY_PREFIX = "textAbstracting.db.";
+    private static final String DEFAULT_VALIDATION_QUERY = "SELECT 1";
+
     private GenericObjectPool gPool = null;
+    private ConnectionFactory conFactory = null;
 
 
     public GenericObjectPool getConnectionPool() {
         return gPool;
     }
 
+    /**
+     * @return источник соединений без пула (например, для проверки доступности БД, когда пул занят)
+     */
+    public ConnectionFactory getConnectionFactory() {
+        return conFactory;
+    }
+
 
     public DataSource setupPool()
             throws ClassNotFoundException {
+        return setupPool(getDefaultUrl());
+    }
+
+    /**
+     * @param url адрес БД (например, одной из реплик)
+     * @return источник соединений пула
+     * @throws ClassNotFoundException если нет драйвера БД.
+     */
+    public DataSource setupPool(String url)
+            throws ClassNotFoundException {
         Class.forName(DbSchema.JDBC_DRIVER);
 
         gPool = new GenericObjectPool();
-        gPool.setMaxActive(5);
+        gPool.setMaxActive(intProperty("maxActive", 5));
+        gPool.setMinIdle(intProperty("minIdle", 1));
+        gPool.setMaxIdle(intProperty("maxIdle", 5));
+        gPool.setMaxWait(longProperty("maxWaitMillis", 10_000));
+        gPool.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_BLOCK);
+
+        String validationQuery = System.getProperty(PROPERTY_PREFIX + "validationQuery", DEFAULT_VALIDATION_QUERY);
+        if (validationQuery.isEmpty()) {
+            validationQuery = null;
+        }
+        gPool.setTestOnBorrow(validationQuery != null && booleanProperty("testOnBorrow", true));
+        long evictionInterval = longProperty("evictionIntervalMillis", 60_000);
+        if (evictionInterval > 0) {
+            gPool.setTestWhileIdle(validationQuery != null);
+            gPool.setTimeBetweenEvictionRunsMillis(evictionInterval);
+        }
 
-        ConnectionFactory conFactory = new DriverManagerConnectionFactory(
-                DbSchema.DB_URL, DbSchema.Credentials.LOGIN, DbSchema.Credentials.PASSWORD);
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("user",
+                System.getProperty(PROPERTY_PREFIX + "user", DbSchema.Credentials.LOGIN));
+        connectionProperties.setProperty("password",
+                System.getProperty(PROPERTY_PREFIX + "password", DbSchema.Credentials.PASSWORD));
+        connectionProperties.setProperty("prepareThreshold", Integer.toString(intProperty("prepareThreshold", 1)));
+        conFactory = new DriverManagerConnectionFactory(url, connectionProperties);
 
-        PoolableConnectionFactory pcf = new PoolableConnectionFactory(conFactory, gPool, null, null, false, true);
+        KeyedObjectPoolFactory<Object, Object> statementPoolFactory = null;
+        if (booleanProperty("poolPreparedStatements", true)) {
+            statementPoolFactory = new GenericKeyedObjectPoolFactory<>(null,
+                    -1,                                            // операторов с одним запросом - сколько угодно
+                    GenericKeyedObjectPool.WHEN_EXHAUSTED_FAIL,
+                    0,
+                    1,                                             // в кэше - один оператор на запрос
+                    intProperty("maxOpenPreparedStatements", 64));
+        }
+
+        // фабрика регистрирует себя в gPool
+        new PoolableConnectionFactory(conFactory, gPool, statementPoolFactory, validationQuery, false, true);
         return new PoolingDataSource(gPool);
     }
+
+    /**
+     * @return адрес БД из настроек (textAbstracting.db.url)
+     */
+    static String getDefaultUrl() {
+        return System.getProperty(PROPERTY_PREFIX + "url", DbSchema.DB_URL);
+    }
+
+    /**
+     * @return запрос проверки соединения из настроек (если проверка отключена - запрос по умолчанию)
+     */
+    static String getValidationQuery() {
+        String validationQuery = System.getProperty(PROPERTY_PREFIX + "validationQuery", DEFAULT_VALIDATION_QUERY);
+        return validationQuery.isEmpty() ? DEFAULT_VALIDATION_QUERY : validationQuery;
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.getInteger(PROPERTY_PREFIX + name, defaultValue);
+    }
+
+    private static long longProperty(String name, long defaultValue) {
+        return Long.getLong(PROPERTY_PREFIX + name, defaultValue);
+    }
+
+    private static boolean booleanProperty(String name, boolean defaultValue) {
+        return Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + name, Boolean.toString(defaultValue)));
+    }
 }
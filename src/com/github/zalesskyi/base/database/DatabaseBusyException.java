@@ -0,0 +1,14 @@
+package com.github.zalesskyi.base.database;
+
+/**
+ * Запрос к БД не выполнен, потому что БД перегружена (см. ConcurrencyLimiter).
+ * В отличие от других ошибок БД, это временное состояние: вместо результата запроса
+ * можно использовать приблизительный (например, часть речи по окончанию слова).
+ */
+public class DatabaseBusyException extends UnsupportedOperationException {
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseBusyException() {
+        super("Database is busy");
+    }
+}
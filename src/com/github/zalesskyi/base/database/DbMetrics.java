@@ -0,0 +1,81 @@
+package com.github.zalesskyi.base.database;
+
+import com.github.zalesskyi.Histogram;
+import com.github.zalesskyi.Metrics;
+import org.apache.commons.pool.impl.GenericObjectPool;
+
+/**
+ * Метрики обращений к БД морфологии.
+ *
+ * Для каждого метода MorphologyDbHelper и каждой таблицы учитываются количество запросов и время
+ * их выполнения (вместе с ожиданием соединения), для каждого метода - количество ошибок.
+ * Отдельно учитывается время ожидания соединения из пула и загрузка пула каждой реплики
+ * (занятые и свободные соединения).
+ *
+ * Количество запросов считается также для каждого потока, чтобы можно было узнать,
+ * сколько запросов к БД вызвала обработка одного запроса клиента (getThreadQueryCount).
+ */
+public class DbMetrics {
+    private static final Histogram BORROW_WAIT = Metrics.timer("db_borrow_wait_seconds",
+            "Time spent waiting for a pooled database connection.", "");
+
+    private static final ThreadLocal<long[]> THREAD_QUERIES = ThreadLocal.withInitial(() -> new long[1]);
+
+    private DbMetrics() {
+    }
+
+    /**
+     * @return количество запросов к БД, выполненных текущим потоком
+     */
+    public static long getThreadQueryCount() {
+        return THREAD_QUERIES.get()[0];
+    }
+
+    /**
+     * Учет выполненного запроса.
+     *
+     * @param method метод MorphologyDbHelper
+     * @param table таблица
+     * @param startNanos System.nanoTime() перед получением соединения
+     */
+    static void record(String method, String table, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        THREAD_QUERIES.get()[0]++;
+        Metrics.timer("db_query_seconds", "Database query time by method, including connection wait.",
+                Metrics.label("method", method)).record(elapsed);
+        Metrics.timer("db_table_query_seconds", "Database query time by table, including connection wait.",
+                Metrics.label("table", table)).record(elapsed);
+        Metrics.counter("db_queries_total", "Database queries by method and table.",
+                Metrics.label("method", method) + "," + Metrics.label("table", table)).increment();
+    }
+
+    /**
+     * Учет ошибки запроса.
+     *
+     * @param method метод MorphologyDbHelper
+     */
+    static void recordError(String method) {
+        Metrics.counter("db_errors_total", "Failed database queries by method.",
+                Metrics.label("method", method)).increment();
+    }
+
+    /**
+     * @param startNanos System.nanoTime() перед получением соединения
+     */
+    static void recordBorrow(long startNanos) {
+        BORROW_WAIT.recordSince(startNanos);
+    }
+
+    /**
+     * Регистрация показателей загрузки пула соединений.
+     *
+     * @param replica имя реплики БД, которой принадлежит пул
+     * @param pool пул соединений
+     */
+    static void registerPool(String replica, GenericObjectPool<?> pool) {
+        String label = Metrics.label("replica", replica);
+        Metrics.gauge("db_pool_active", "Database connections in use.", label, pool::getNumActive);
+        Metrics.gauge("db_pool_idle", "Idle database connections.", label, pool::getNumIdle);
+        Metrics.gauge("db_pool_max_active", "Maximum database connections.", label, pool::getMaxActive);
+    }
+}
@@ -2,20 +2,30 @@ package com.github.zalesskyi.base.database;
 
 import com.sun.istack.internal.Nullable;
 
-import javax.sql.DataSource;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Класс, предоставляющий интерфейс для работы с БД.
+ * Таблицы только читаются, поэтому запросы распределяются между репликами БД (ReplicaSet),
+ * запрос, завершившийся ошибкой соединения (Replica.isConnectionFailure), повторяется на другой реплике.
+ * Остальные ошибки (например, в тексте запроса) не повторяются.
+ * Каждый запрос к БД учитывается в метриках (DbMetrics).
+ * Количество одновременных запросов при обработке текстов ограничено (ConcurrencyLimiter):
+ * если БД перегружена, запрос не ждет соединение, а завершается DatabaseBusyException.
  */
-public class MorphologyDbHelper {
+public class MorphologyDbHelper implements MorphologyRepository {
+    private static final String TABLE_NAME_COLUMN = "table_name";
+    private static final int WORDS_FETCH_SIZE = 10_000;
+    private static final int MAX_ATTEMPTS = 2;
+    private static final Set<String> TABLES = new HashSet<>(Arrays.asList(MorphologySnapshotExporter.TABLES));
+
     private static MorphologyDbHelper instance;
 
-    private ConnectionPool connectionPool;
-    private DataSource dataSource;
+    private ReplicaSet replicas;
+    private TableFilters filters;
+    private ConcurrencyLimiter limiter;
 
     public static MorphologyDbHelper getInstance() throws Exception {
         if (instance == null) {
@@ -25,199 +35,442 @@ public class MorphologyDbHelper {
     }
 
     private MorphologyDbHelper() throws Exception {
-            connectionPool = new ConnectionPool();
-            dataSource = connectionPool.setupPool();
+        this(ReplicaSet.fromProperties(), TableFilters.getDefaultFalsePositiveRate());
+    }
+
+    /**
+     * @param replicas реплики БД (например, несколько локальных экземпляров вместо реплик из настроек)
+     * @param bloomFilterFpp допустимая вероятность ложного срабатывания фильтров Блума таблиц (TableFilters).
+     *                       0 - фильтры не строятся (таблицы не читаются целиком) и не учитываются в метриках
+     */
+    MorphologyDbHelper(ReplicaSet replicas, double bloomFilterFpp) {
+        this.replicas = replicas;
+        replicas.start();
+        limiter = new ConcurrencyLimiter(replicas.getMaxActive());
+        filters = new TableFilters(this, bloomFilterFpp);
+        filters.start();
     }
 
     /**
-     * Запрос word из одной из таблиц БД.
+     * Получение соединения из пула реплики. Время ожидания соединения записывается в метрики.
+     */
+    private static Connection borrow(Replica replica) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return replica.getConnection();
+        } finally {
+            DbMetrics.recordBorrow(start);
+        }
+    }
+
+    /**
+     * Запрос слова по его коду.
      *
      * @param from таблица
-     * @param where условие
-     * @return строку, если слово есть в БД
-     *         null, если слова в БД нет.
-     * @throws UnsupportedOperationException если не удалось установить подключение с БД.
+     * @param code код слова
+     * @return слово, если слово с таким кодом есть в таблице
+     *         null, если нет.
+     * @throws IllegalArgumentException если таблицы нет в БД.
+     * @throws UnsupportedOperationException если не удалось выполнить запрос.
      */
     @Nullable
-    public String queryWord(String from, String where) throws UnsupportedOperationException {
-        try (Connection con = dataSource.getConnection()) {
-            Statement stat = con.createStatement();
-
-            ResultSet set = stat.executeQuery("SELECT " + DbSchema.AdjectivesTable.Columns.WORD + " FROM " + from + " WHERE " + where);
-
-            if (set.next()) {
-                return set.getString(DbSchema.AdjectivesTable.Columns.WORD);           // имя столбца 'WORD' во всех таблицах одинаковое
-            }
-        } catch (SQLException exc) {
-            exc.printStackTrace();
-            throw new UnsupportedOperationException("Can't perform this action");
-        }
-        return null;
+    public String queryWord(String from, int code) throws IllegalArgumentException, UnsupportedOperationException {
+        return query("queryWord", from, select(DbSchema.NounsTable.Columns.WORD, from, DbSchema.NounsTable.Columns.CODE),
+                stat -> stat.setInt(1, code),
+                set -> set.next() ? set.getString(1) : null);
     }
 
     /**
-     * Запрос падежа у слова.
+     * Запрос падежей всех словоформ слова.
      * Поддерживаются части речи:
      *  1) Сущ
      *  2) Прил
+     *  3) Прич
      *
      * @param from таблица
-     * @param where условие
-     * @return падежи, если условие удовлетворяется
+     * @param word слово
+     * @return падежи, если слово есть в таблице
      *         null, если нет.
      *
      * @throws IllegalArgumentException если был запрошен падеж
-     * частей речи, не являющихся ни сущ., ни прил.
+     * частей речи, не являющихся ни сущ., ни прил., ни прич.
      *
-     * @throws UnsupportedOperationException если не удалось установить подключение с БД.
+     * @throws UnsupportedOperationException если не удалось выполнить запрос.
      */
-    public List<String> queryCase(String from, String where)
+    @Nullable
+    public List<String> queryCase(String from, String word)
             throws IllegalArgumentException, UnsupportedOperationException {
-
-        try (Connection con = dataSource.getConnection()) {
-            if (!from.equals(DbSchema.AdjectivesTable.NAME)
-                    && !from.equals(DbSchema.NounsTable.NAME)
-                    && !from.equals(DbSchema.ParticiplesTable.NAME)) {
-                throw new IllegalArgumentException("Supported only adjectives, nouns and participles");
-            }
-
-            Statement stat = con.createStatement();
-            ResultSet set = stat.executeQuery("SELECT " +
-                    DbSchema.AdjectivesTable.Columns.WORD_CASE + " FROM " + from + " WHERE " + where);
-
-            List<String> cases = new ArrayList<>();
-            while (set.next()) {                                                  // заполняем массив результатами запроса
-                cases.add(set.getString(DbSchema.NounsTable.Columns.WORD_CASE));
-            }
-            return cases.isEmpty() ? null : cases;
-        } catch (SQLException exc) {
-            exc.printStackTrace();
-            throw new UnsupportedOperationException("Can't perform this action");
+        if (!from.equals(DbSchema.AdjectivesTable.NAME)
+                && !from.equals(DbSchema.NounsTable.NAME)
+                && !from.equals(DbSchema.ParticiplesTable.NAME)) {
+            throw new IllegalArgumentException("Supported only adjectives, nouns and participles");
         }
+        return query("queryCase", from, selectByWord(DbSchema.NounsTable.Columns.WORD_CASE, from),
+                stat -> stat.setString(1, word),
+                set -> {
+                    List<String> cases = new ArrayList<>();
+                    while (set.next()) {                                      // заполняем массив результатами запроса
+                        String wordCase = set.getString(1);
+                        if (wordCase != null) {
+                            cases.add(wordCase);
+                        }
+                    }
+                    return cases.isEmpty() ? null : cases;
+                });
     }
 
-
     /**
      * Запрос кода родительского слова.
      * Родительское слово - это слово в том же числе, в том же роде, но в именительном падеже.
      *
      * @param from таблица.
-     * @param where условие
+     * @param word слово
      * @return код родительского слова,
      *         если слова в таблице нет возвращается -1.
-     * @throws UnsupportedOperationException если не удалось установить соединение с БД.
+     * @throws IllegalArgumentException если таблицы нет в БД.
+     * @throws UnsupportedOperationException если не удалось выполнить запрос.
      */
-    public int queryParentCode(String from, String where) throws UnsupportedOperationException {
-        try (Connection con = dataSource.getConnection()) {
-
-            Statement stat = con.createStatement();
-            ResultSet set = stat.executeQuery("SELECT " +
-                    DbSchema.AdjectivesTable.Columns.CODE_PARENT + " FROM " + from + " WHERE " + where);
-
-            if (set.next()) {
-                return set.getInt(DbSchema.AdjectivesTable.Columns.CODE_PARENT);
-            }
-            return -1;
-        } catch (SQLException exc) {
-            exc.printStackTrace();
-            throw new UnsupportedOperationException("Can't perform this action");
-        }
+    public int queryParentCode(String from, String word) throws IllegalArgumentException, UnsupportedOperationException {
+        return query("queryParentCode", from, selectByWord(DbSchema.NounsTable.Columns.CODE_PARENT, from),
+                stat -> stat.setString(1, word),
+                set -> set.next() ? set.getInt(1) : -1);
     }
 
     /**
-     * Запрос кода текущего слова.
+     * Запрос кода слова.
      *
      * @param from таблица.
-     * @param where условие
+     * @param word слово
      * @return код слова,
      *         если слова в таблице нет возвращается -1.
-     * @throws UnsupportedOperationException если не удалось установить соединение с БД.
+     * @throws IllegalArgumentException если таблицы нет в БД.
+     * @throws UnsupportedOperationException если не удалось выполнить запрос.
      */
-    public int queryCode(String from, String where) throws UnsupportedOperationException {
-        try (Connection con = dataSource.getConnection()) {
-
-            Statement stat = con.createStatement();
-            ResultSet set = stat.executeQuery("SELECT " +
-                    DbSchema.AdjectivesTable.Columns.CODE + " FROM " + from + " WHERE " + where);
-
-            if (set.next()) {
-                return set.getInt(DbSchema.AdjectivesTable.Columns.CODE);
-            }
-            return -1;
-        } catch (SQLException exc) {
-            exc.printStackTrace();
-            throw new UnsupportedOperationException("Can't perform this action");
-        }
+    public int queryCode(String from, String word) throws IllegalArgumentException, UnsupportedOperationException {
+        return query("queryCode", from, selectByWord(DbSchema.NounsTable.Columns.CODE, from),
+                stat -> stat.setString(1, word),
+                set -> set.next() ? set.getInt(1) : -1);
     }
 
+    @Override
     public List<String> queryWords(String from)
             throws UnsupportedOperationException, IllegalArgumentException {
-
-       /* if (from.equals(DbSchema.AdjectivesTable.NAME) || from.equals(DbSchema.NounsTable.NAME)) {
-            throw new IllegalArgumentException();
-        }todo*/
-        try (Connection con = dataSource.getConnection()) {
-            Statement stat = con.createStatement();
-            ResultSet set = stat.executeQuery("SELECT " +
-                    DbSchema.AdjectivesTable.Columns.WORD + " FROM " + from);
-            List<String> words = new ArrayList<>(5000);
-            while (set.next()) {
-                words.add(set.getString(DbSchema.AdjectivesTable.Columns.WORD));
-            }
-            Collections.reverse(words);
-            return words;
-        } catch (SQLException exc) {
-            exc.printStackTrace();
-            throw new UnsupportedOperationException("Can't perform this action");
-        }
+        return read("queryWords", from, "SELECT " + DbSchema.NounsTable.Columns.WORD + " FROM " + checkTable(from),
+                stat -> { },
+                set -> {
+                    List<String> words = new ArrayList<>(5000);
+                    while (set.next()) {
+                        words.add(set.getString(1));
+                    }
+                    Collections.reverse(words);
+                    return words;
+                });
     }
 
 
     /**
      * Метод, определяющий, содержит ли заданная таблица заданное слово.
+     * Если фильтр Блума таблицы говорит, что слова в ней нет, БД не запрашивается.
+     * Ложное срабатывание учитывается, только если фильтр таблицы уже построен.
      *
      * @param word заданное слово
      * @param table заданная таблица
      * @return true -> содержит
-     *         false -> не содержит
+     *         false -> не содержит (или не удалось выполнить запрос)
      */
+    @Override
     public boolean isTableContainsWord(String table, String word) {
-        try (Connection con = dataSource.getConnection()) {
-            PreparedStatement stat = con.prepareStatement("SELECT * FROM " + table +
-                    " WHERE " + DbSchema.NounsTable.Columns.WORD + "=?");
-            stat.setString(1, word);
-            return stat.executeQuery().next();
-        } catch (SQLException exc) {
-            exc.printStackTrace();
+        boolean filtered = filters.hasFilter(table);
+        if (filtered && !filters.mightContain(table, word)) {
+            return false;
+        }
+        try {
+            boolean found = query("isTableContainsWord", table, selectByWord("1", table) + " LIMIT 1",
+                    stat -> stat.setString(1, word),
+                    ResultSet::next);
+            if (!found && filtered) {                                         // слово прошло фильтр таблицы
+                filters.recordFalsePositives(table, 1);
+            }
+            return found;
+        } catch (UnsupportedOperationException exc) {
             return false;
         }
     }
 
 
-    public boolean isTableContainsWordByCond(String table, String where) {
-        try (Connection con = dataSource.getConnection()) {
-            Statement stat = con.createStatement();
-            ResultSet rs = stat.executeQuery("SELECT * FROM " + table + " WHERE " + where);
-            return rs.next();
-        } catch (SQLException exc) {
-            exc.printStackTrace();
-            return false;
+    /**
+     * Поиск сразу нескольких слов в нескольких таблицах одним запросом.
+     * В каждой таблице ищутся только слова, прошедшие ее фильтр Блума,
+     * таблицы, где искать нечего, в запрос не попадают.
+     *
+     * @param words искомые слова
+     * @param tables таблицы, в которых ищутся слова
+     * @return для каждого найденного слова - имена таблиц, которые его содержат.
+     *         Слова, которых нет ни в одной таблице, в результат не попадают.
+     * @throws DatabaseBusyException если БД перегружена.
+     * @throws UnsupportedOperationException если не удалось выполнить запрос.
+     */
+    @Override
+    public Map<String, Set<String>> queryTablesContaining(Collection<String> words, String... tables)
+            throws UnsupportedOperationException {
+        if (words.isEmpty() || tables.length == 0) {
+            return new HashMap<>();
+        }
+
+        List<String> queriedTables = new ArrayList<>(tables.length);
+        List<Collection<String>> candidates = new ArrayList<>(tables.length);
+        for (String table : tables) {
+            Collection<String> tableCandidates = filters.filter(table, words);
+            if (!tableCandidates.isEmpty()) {
+                queriedTables.add(table);
+                candidates.add(tableCandidates);
+            }
         }
+        if (queriedTables.isEmpty()) {                                       // ни одного слова нет ни в одной таблице
+            return new HashMap<>();
+        }
+
+        StringBuilder query = new StringBuilder();
+        for (String table : queriedTables) {
+            checkTable(table);
+            if (query.length() > 0) {
+                query.append(" UNION ");
+            }
+            query.append("SELECT ").append(DbSchema.NounsTable.Columns.WORD)
+                    .append(", '").append(table).append("' AS ").append(TABLE_NAME_COLUMN)
+                    .append(" FROM ").append(table)
+                    .append(" WHERE ").append(DbSchema.NounsTable.Columns.WORD).append(" = ANY(?)");
+        }
+
+        String sql = query.toString();
+        Map<String, Set<String>> result = execute("queryTablesContaining", String.join("+", queriedTables), true,
+                con -> {
+                    Map<String, Set<String>> found = new HashMap<>();
+                    try (PreparedStatement stat = con.prepareStatement(sql)) {
+                        List<Array> arrays = new ArrayList<>(queriedTables.size());
+                        for (int i = 0; i < queriedTables.size(); i++) {
+                            Array wordsArray = con.createArrayOf("varchar", candidates.get(i).toArray());
+                            arrays.add(wordsArray);
+                            stat.setArray(i + 1, wordsArray);
+                        }
+                        try (ResultSet set = stat.executeQuery()) {
+                            while (set.next()) {
+                                found.computeIfAbsent(set.getString(DbSchema.NounsTable.Columns.WORD),
+                                        w -> new HashSet<>()).add(set.getString(TABLE_NAME_COLUMN));
+                            }
+                        }
+                        for (Array wordsArray : arrays) {
+                            wordsArray.free();
+                        }
+                    }
+                    return found;
+                });
+
+        Map<String, Integer> foundCounts = new HashMap<>();
+        for (Set<String> wordTables : result.values()) {
+            for (String table : wordTables) {
+                foundCounts.merge(table, 1, Integer::sum);
+            }
+        }
+        for (int i = 0; i < queriedTables.size(); i++) {
+            if (candidates.get(i) != words) {                                  // слова прошли фильтр таблицы
+                String table = queriedTables.get(i);
+                filters.recordFalsePositives(table, candidates.get(i).size() - foundCounts.getOrDefault(table, 0));
+            }
+        }
+        return result;
     }
 
-    public int getPlurality(String table, String word) {
-        try (Connection con = dataSource.getConnection()) {
-            PreparedStatement stat = con.prepareStatement("SELECT " + DbSchema.NounsTable.Columns.PLURAL + " FROM " + table +
-                    " WHERE " + DbSchema.NounsTable.Columns.WORD + "=?");
-            stat.setString(1, word);
-            ResultSet res = stat.executeQuery();
-            if (res.next()) {
-                return res.getInt(DbSchema.NounsTable.Columns.PLURAL);
+
+    /**
+     * @param table таблица
+     * @return количество слов в таблице
+     * @throws UnsupportedOperationException если не удалось выполнить запрос.
+     */
+    long countWords(String table) throws UnsupportedOperationException {
+        return read("countWords", table, "SELECT count(*) FROM " + checkTable(table),
+                stat -> { },
+                set -> set.next() ? set.getLong(1) : 0);
+    }
+
+    /**
+     * Чтение всех слов таблицы порциями (курсором), без загрузки таблицы в память целиком.
+     *
+     * @param table таблица
+     * @param consumer обработчик слов
+     * @throws UnsupportedOperationException если не удалось выполнить запрос.
+     */
+    void forEachWord(String table, Consumer<String> consumer) throws UnsupportedOperationException {
+        String sql = "SELECT " + DbSchema.NounsTable.Columns.WORD + " FROM " + checkTable(table);
+        execute("forEachWord", table, false, con -> {
+            con.setAutoCommit(false);                                          // иначе драйвер PostgreSQL читает все строки сразу
+            try (PreparedStatement stat = con.prepareStatement(sql)) {
+                stat.setFetchSize(WORDS_FETCH_SIZE);
+                try (ResultSet set = stat.executeQuery()) {
+                    while (set.next()) {
+                        consumer.accept(set.getString(1));
+                    }
+                }
+            } finally {
+                con.rollback();
+                con.setAutoCommit(true);
             }
+            return null;
+        });
+    }
+
+    @Override
+    public int getPlurality(String table, String word) {
+        try {
+            return query("getPlurality", table, selectByWord(DbSchema.NounsTable.Columns.PLURAL, table),
+                    stat -> stat.setString(1, word),
+                    set -> set.next() ? set.getInt(1) : -1);
+        } catch (UnsupportedOperationException exc) {
             return -1;
-        } catch (SQLException exc) {
-            exc.printStackTrace();
-            return -1;
         }
     }
+
+    /**
+     * Выполнение параметризованного запроса при обработке текста (с ограничением одновременных запросов).
+     *
+     * @param method название запроса (для метрик)
+     * @param table таблица (для метрик)
+     * @param sql текст запроса с параметрами '?'
+     * @param binder установка параметров
+     * @param reader чтение результата
+     * @return результат reader
+     * @throws DatabaseBusyException если БД перегружена.
+     * @throws UnsupportedOperationException если не удалось выполнить запрос.
+     */
+    private <T> T query(String method, String table, String sql, Binder binder, Reader<T> reader)
+            throws UnsupportedOperationException {
+        return execute(method, table, true, prepared(sql, binder, reader));
+    }
+
+    /**
+     * Выполнение параметризованного запроса вне обработки текстов (загрузка словарей, фильтров),
+     * без ограничения одновременных запросов.
+     *
+     * @see #query
+     */
+    private <T> T read(String method, String table, String sql, Binder binder, Reader<T> reader)
+            throws UnsupportedOperationException {
+        return execute(method, table, false, prepared(sql, binder, reader));
+    }
+
+    /**
+     * Запрос с подготовленным оператором.
+     * Оператор и результат закрываются после чтения, оператор возвращается в кэш соединения (ConnectionPool),
+     * поэтому повторный запрос с тем же текстом не подготавливается заново.
+     */
+    private static <T> Work<T> prepared(String sql, Binder binder, Reader<T> reader) {
+        return con -> {
+            try (PreparedStatement stat = con.prepareStatement(sql)) {
+                binder.bind(stat);
+                try (ResultSet set = stat.executeQuery()) {
+                    return reader.read(set);
+                }
+            }
+        };
+    }
+
+    /**
+     * Выполнение запроса на одной из реплик.
+     * Если запрос завершился ошибкой, он один раз повторяется на другой реплике.
+     * Время запроса и ошибки записываются в метрики.
+     *
+     * @param method название запроса (для метрик)
+     * @param table таблица (для метрик)
+     * @param limited ограничивать ли количество одновременных запросов (ConcurrencyLimiter)
+     * @param work запрос
+     * @return результат work
+     * @throws DatabaseBusyException если БД перегружена.
+     * @throws UnsupportedOperationException если не удалось выполнить запрос.
+     */
+    private <T> T execute(String method, String table, boolean limited, Work<T> work)
+            throws UnsupportedOperationException {
+        if (limited) {
+            limiter.acquire();
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Replica replica = replicas.choose(null);
+            for (int attempt = 1; ; attempt++) {
+                long attemptStart = System.nanoTime();
+                boolean connectionFailed = false;
+                try (Connection con = borrow(replica)) {
+                    T result = work.run(con);
+                    failed = false;
+                    return result;
+                } catch (SQLException exc) {
+                    exc.printStackTrace();
+                    DbMetrics.recordError(method);
+                    connectionFailed = Replica.isConnectionFailure(exc);
+                } finally {
+                    replica.release(System.nanoTime() - attemptStart, connectionFailed);
+                }
+                // ошибка в запросе или занятый пул - повтор на другой реплике не поможет
+                replica = connectionFailed && attempt < MAX_ATTEMPTS ? replicas.choose(replica) : null;
+                if (replica == null) {
+                    throw new UnsupportedOperationException("Can't perform this action");
+                }
+            }
+        } finally {
+            if (limited) {
+                limiter.release(System.nanoTime() - start, failed);
+            }
+            DbMetrics.record(method, table, start);
+        }
+    }
+
+    /**
+     * @return запрос столбца column из таблицы table по слову (параметр - слово)
+     * @throws IllegalArgumentException если таблицы нет в БД.
+     */
+    private static String selectByWord(String column, String table) throws IllegalArgumentException {
+        return select(column, table, DbSchema.NounsTable.Columns.WORD);     // имена столбцов во всех таблицах одинаковые
+    }
+
+    /**
+     * @return запрос столбца column из таблицы table по значению столбца whereColumn (параметр - значение)
+     * @throws IllegalArgumentException если таблицы нет в БД.
+     */
+    private static String select(String column, String table, String whereColumn) throws IllegalArgumentException {
+        return "SELECT " + column + " FROM " + checkTable(table) + " WHERE " + whereColumn + "=?";
+    }
+
+    /**
+     * Имя таблицы подставляется в текст запроса, поэтому допускаются только таблицы из DbSchema.
+     *
+     * @return имя таблицы
+     * @throws IllegalArgumentException если таблицы нет в БД.
+     */
+    private static String checkTable(String table) throws IllegalArgumentException {
+        if (!TABLES.contains(table)) {
+            throw new IllegalArgumentException("Unknown table: " + table);
+        }
+        return table;
+    }
+
+    /**
+     * Запрос, выполняемый на соединении.
+     */
+    private interface Work<T> {
+        T run(Connection con) throws SQLException;
+    }
+
+    /**
+     * Установка параметров запроса.
+     */
+    private interface Binder {
+        void bind(PreparedStatement stat) throws SQLException;
+    }
+
+    /**
+     * Чтение результата запроса.
+     */
+    private interface Reader<T> {
+        T read(ResultSet set) throws SQLException;
+    }
 }
@@ -0,0 +1,98 @@
+package com.github.zalesskyi.base.database;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+
+/**
+ * Выбор источника морфологических данных.
+ *
+ * Источник состоит из уровней (TieredMorphologyRepository) - источников,
+ * перечисленных в системном свойстве textAbstracting.morphologyTiers через запятую:
+ *  snapshot - снимок таблиц (путь к файлу снимка - системное свойство textAbstracting.morphologySnapshot)
+ *  database - БД
+ * По умолчанию, если задан снимок, используется только он и к БД при реферировании обращений нет,
+ * иначе используется БД. Например, "snapshot,database" - слова сначала ищутся в снимке, а слова, которых
+ * в нем нет (и таблицы, которых нет в снимке), - в БД.
+ * Кэш в памяти перед уровнями - кэш частей речи (PartOfSpeechCache, размер - textAbstracting.posCacheSize).
+ *
+ * Источник можно задать и явно (setDefault), например, хранилище в памяти для бенчмарков.
+ *
+ * Версия морфологических данных (getDataVersion) входит в ETag результатов реферирования:
+ * результат зависит не только от текста, но и от таблиц, поэтому после обновления данных
+ * прежние ETag клиентов перестают совпадать. Версия снимка определяется по файлу, версию таблиц БД
+ * задают свойством textAbstracting.morphologyVersion при их обновлении.
+ */
+public class MorphologyRepositories {
+    public static final String SNAPSHOT_PROPERTY = "textAbstracting.morphologySnapshot";
+    public static final String TIERS_PROPERTY = "textAbstracting.morphologyTiers";
+    public static final String VERSION_PROPERTY = "textAbstracting.morphologyVersion";
+
+    public static final String SNAPSHOT_TIER = "snapshot";
+    public static final String DATABASE_TIER = "database";
+
+    private static volatile MorphologyRepository instance;
+    private static volatile String dataVersion;
+
+    public static MorphologyRepository getDefault() throws Exception {
+        if (instance == null) {
+            synchronized (MorphologyRepositories.class) {
+                if (instance == null) {
+                    instance = create();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Явная установка источника морфологических данных (вместо БД или снимка).
+     * Должна вызываться до первого обращения к getDefault().
+     *
+     * @param repository источник морфологических данных
+     */
+    public static void setDefault(MorphologyRepository repository) {
+        synchronized (MorphologyRepositories.class) {
+            instance = repository;
+        }
+    }
+
+    /**
+     * @return версия морфологических данных: textAbstracting.morphologyVersion и, если задан снимок,
+     *         его размер и время изменения. Снимок читается один раз при запуске, поэтому версия не меняется
+     *         до перезапуска сервера.
+     */
+    public static String getDataVersion() {
+        if (dataVersion == null) {
+            StringBuilder version = new StringBuilder(System.getProperty(VERSION_PROPERTY, "1"));
+            String snapshotPath = System.getProperty(SNAPSHOT_PROPERTY);
+            if (snapshotPath != null) {
+                File snapshot = new File(snapshotPath);
+                version.append('.').append(Long.toHexString(snapshot.length()))
+                        .append('.').append(Long.toHexString(snapshot.lastModified()));
+            }
+            dataVersion = version.toString();
+        }
+        return dataVersion;
+    }
+
+    private static MorphologyRepository create() throws Exception {
+        String snapshotPath = System.getProperty(SNAPSHOT_PROPERTY);
+        String tierNames = System.getProperty(TIERS_PROPERTY, snapshotPath != null ? SNAPSHOT_TIER : DATABASE_TIER);
+
+        LinkedHashMap<String, MorphologyRepository> tiers = new LinkedHashMap<>();
+        for (String name : tierNames.split(",")) {
+            name = name.trim();
+            if (SNAPSHOT_TIER.equals(name)) {
+                if (snapshotPath == null) {
+                    throw new IllegalStateException(SNAPSHOT_PROPERTY + " is not set");
+                }
+                tiers.put(name, new MorphologySnapshot(new File(snapshotPath)));
+            } else if (DATABASE_TIER.equals(name)) {
+                tiers.put(name, MorphologyDbHelper.getInstance());
+            } else {
+                throw new IllegalArgumentException("Unknown morphology tier: " + name);
+            }
+        }
+        return new TieredMorphologyRepository(tiers);
+    }
+}
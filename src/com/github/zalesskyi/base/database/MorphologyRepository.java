@@ -0,0 +1,54 @@
+package com.github.zalesskyi.base.database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Источник морфологических данных, который используется при реферировании.
+ * Реализуется как БД (MorphologyDbHelper), так и локальным снимком таблиц (MorphologySnapshot).
+ * Несколько источников объединяются в уровни TieredMorphologyRepository.
+ */
+public interface MorphologyRepository {
+
+    /**
+     * @param from таблица
+     * @return все слова таблицы
+     * @throws UnsupportedOperationException если не удалось получить слова.
+     */
+    List<String> queryWords(String from) throws UnsupportedOperationException;
+
+    /**
+     * Поиск сразу нескольких слов в нескольких таблицах.
+     *
+     * @param words искомые слова
+     * @param tables таблицы, в которых ищутся слова
+     * @return для каждого найденного слова - имена таблиц, которые его содержат.
+     * @throws UnsupportedOperationException если не удалось выполнить поиск.
+     */
+    Map<String, Set<String>> queryTablesContaining(Collection<String> words, String... tables)
+            throws UnsupportedOperationException;
+
+    /**
+     * @param table заданная таблица
+     * @param word заданное слово
+     * @return true, если таблица содержит слово
+     */
+    boolean isTableContainsWord(String table, String word);
+
+    /**
+     * @param table таблица
+     * @param word слово
+     * @return число слова, -1 если слова в таблице нет
+     */
+    int getPlurality(String table, String word);
+
+    /**
+     * @param table таблица
+     * @return true, если источник содержит данные таблицы (например, снимок может содержать не все таблицы)
+     */
+    default boolean containsTable(String table) {
+        return true;
+    }
+}
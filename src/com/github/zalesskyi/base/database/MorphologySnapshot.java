@@ -0,0 +1,316 @@
+package com.github.zalesskyi.base.database;
+
+import com.sun.istack.internal.Nullable;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Снимок таблиц БД russian_morphology, отображенный в память.
+ * Снимок создается MorphologySnapshotExporter (формат описан там же).
+ *
+ * Поиск слова - двоичный поиск по отсортированным словам прямо в отображенном файле,
+ * без обращения к БД и почти без выделения памяти.
+ * Файл отображается только для чтения, поэтому несколько JVM на одной машине
+ * используют одни и те же страницы памяти.
+ */
+public class MorphologySnapshot implements MorphologyRepository {
+    static final int MAGIC = 0x4D525048;                        // "MRPH"
+    static final int VERSION = 1;
+
+    private final Map<String, Table> tables;
+
+    /**
+     * Открытие снимка.
+     *
+     * @param file файл снимка
+     * @throws IOException если файл не удалось прочитать или он имеет неверный формат.
+     */
+    public MorphologySnapshot(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported morphology snapshot: " + file);
+        }
+        int tableCount = buffer.getInt(2 * Integer.BYTES);
+
+        tables = new HashMap<>();
+        DataInputStream header = new DataInputStream(new BufferInputStream(buffer, 3 * Integer.BYTES));
+        for (int i = 0; i < tableCount; i++) {
+            String name = header.readUTF();
+            long offset = header.readLong();
+            tables.put(name, new Table(buffer, (int) offset));
+        }
+    }
+
+    @Override
+    public List<String> queryWords(String from) throws UnsupportedOperationException {
+        Table table = getTable(from);
+        List<String> words = new ArrayList<>(table.termCount);
+        for (int term = 0; term < table.termCount; term++) {
+            words.add(table.termAt(term));
+        }
+        return words;
+    }
+
+    @Override
+    public Map<String, Set<String>> queryTablesContaining(Collection<String> words, String... tables) {
+        Map<String, Set<String>> result = new HashMap<>();
+        for (String table : tables) {
+            Table t = this.tables.get(table);
+            if (t == null) {
+                continue;
+            }
+            for (String word : words) {
+                if (t.find(word) >= 0) {
+                    result.computeIfAbsent(word, w -> new HashSet<>()).add(table);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isTableContainsWord(String table, String word) {
+        Table t = tables.get(table);
+        return t != null && t.find(word) >= 0;
+    }
+
+    @Override
+    public int getPlurality(String table, String word) {
+        int row = findFirstRow(table, word);
+        return row < 0 ? -1 : tables.get(table).plural(row);
+    }
+
+    @Override
+    public boolean containsTable(String table) {
+        return tables.containsKey(table);
+    }
+
+    /**
+     * @param table таблица
+     * @param word слово
+     * @return код слова, -1 если слова в таблице нет
+     */
+    public int getCode(String table, String word) {
+        int row = findFirstRow(table, word);
+        return row < 0 ? -1 : tables.get(table).code(row);
+    }
+
+    /**
+     * @param table таблица
+     * @param word слово
+     * @return код родительского слова, -1 если слова в таблице нет
+     */
+    public int getParentCode(String table, String word) {
+        int row = findFirstRow(table, word);
+        return row < 0 ? -1 : tables.get(table).parentCode(row);
+    }
+
+    /**
+     * @param table таблица
+     * @param word слово
+     * @return род слова, null если слова в таблице нет
+     */
+    @Nullable
+    public String getGender(String table, String word) {
+        int row = findFirstRow(table, word);
+        return row < 0 ? null : tables.get(table).gender(row);
+    }
+
+    /**
+     * @param table таблица
+     * @param word слово
+     * @return падежи всех словоформ слова, null если слова в таблице нет
+     */
+    @Nullable
+    public List<String> getCases(String table, String word) {
+        Table t = tables.get(table);
+        int term = t == null ? -1 : t.find(word);
+        if (term < 0) {
+            return null;
+        }
+        List<String> cases = new ArrayList<>();
+        for (int row = t.firstRow(term); row < t.firstRow(term + 1); row++) {
+            String wordCase = t.wordCase(row);
+            if (wordCase != null) {
+                cases.add(wordCase);
+            }
+        }
+        return cases.isEmpty() ? null : cases;
+    }
+
+    /**
+     * @return имена таблиц снимка
+     */
+    public Set<String> getTableNames() {
+        return Collections.unmodifiableSet(tables.keySet());
+    }
+
+    private int findFirstRow(String table, String word) {
+        Table t = tables.get(table);
+        int term = t == null ? -1 : t.find(word);
+        return term < 0 ? -1 : t.firstRow(term);
+    }
+
+    private Table getTable(String name) {
+        Table table = tables.get(name);
+        if (table == null) {
+            throw new UnsupportedOperationException("Table " + name + " is not in snapshot");
+        }
+        return table;
+    }
+
+    /**
+     * Секция одной таблицы. Все методы используют только абсолютные чтения буфера,
+     * поэтому объект можно использовать из нескольких потоков.
+     */
+    private static final class Table {
+        private final ByteBuffer buffer;
+        private final int termCount;
+        private final int termStarts;
+        private final int rowStarts;
+        private final int codes;
+        private final int parentCodes;
+        private final int plurals;
+        private final int genders;
+        private final int cases;
+        private final int chars;
+        private final String[] values;
+
+        private Table(ByteBuffer buffer, int offset) throws IOException {
+            this.buffer = buffer;
+            termCount = buffer.getInt(offset);
+            int rowCount = buffer.getInt(offset + Integer.BYTES);
+            int valuesCount = buffer.getInt(offset + 2 * Integer.BYTES);
+            codes = offset + buffer.getInt(offset + 3 * Integer.BYTES);
+            parentCodes = offset + buffer.getInt(offset + 4 * Integer.BYTES);
+            plurals = offset + buffer.getInt(offset + 5 * Integer.BYTES);
+            genders = plurals + rowCount;
+            cases = genders + rowCount;
+            int valuesOffset = offset + buffer.getInt(offset + 6 * Integer.BYTES);
+            chars = offset + buffer.getInt(offset + 7 * Integer.BYTES);
+            termStarts = offset + 9 * Integer.BYTES;
+            rowStarts = termStarts + (termCount + 1) * Integer.BYTES;
+
+            values = new String[valuesCount];
+            DataInputStream in = new DataInputStream(new BufferInputStream(buffer, valuesOffset));
+            for (int i = 0; i < valuesCount; i++) {
+                values[i] = in.readUTF();
+            }
+        }
+
+        /**
+         * Двоичный поиск слова.
+         *
+         * @param word слово
+         * @return номер слова в таблице, отрицательное число если слова нет
+         */
+        private int find(String word) {
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareTerm(mid, word);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * Сравнение слова снимка с заданным словом (как String.compareTo).
+         */
+        private int compareTerm(int term, String word) {
+            int start = termStart(term);
+            int length = termStart(term + 1) - start;
+            int n = Math.min(length, word.length());
+            for (int i = 0; i < n; i++) {
+                char c = buffer.getChar(chars + (start + i) * Character.BYTES);
+                char w = word.charAt(i);
+                if (c != w) {
+                    return c - w;
+                }
+            }
+            return length - word.length();
+        }
+
+        private String termAt(int term) {
+            int start = termStart(term);
+            int length = termStart(term + 1) - start;
+            char[] value = new char[length];
+            for (int i = 0; i < length; i++) {
+                value[i] = buffer.getChar(chars + (start + i) * Character.BYTES);
+            }
+            return new String(value);
+        }
+
+        private int termStart(int term) {
+            return buffer.getInt(termStarts + term * Integer.BYTES);
+        }
+
+        private int firstRow(int term) {
+            return buffer.getInt(rowStarts + term * Integer.BYTES);
+        }
+
+        private int code(int row) {
+            return buffer.getInt(codes + row * Integer.BYTES);
+        }
+
+        private int parentCode(int row) {
+            return buffer.getInt(parentCodes + row * Integer.BYTES);
+        }
+
+        private int plural(int row) {
+            return buffer.get(plurals + row);
+        }
+
+        @Nullable
+        private String gender(int row) {
+            return value(buffer.get(genders + row));
+        }
+
+        @Nullable
+        private String wordCase(int row) {
+            return value(buffer.get(cases + row));
+        }
+
+        private String value(int index) {
+            return index < 0 ? null : values[index];
+        }
+    }
+
+    /**
+     * Последовательное чтение буфера, начиная с заданной позиции (не меняет позицию самого буфера).
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        private int position;
+
+        private BufferInputStream(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        @Override
+        public int read() {
+            return position < buffer.limit() ? buffer.get(position++) & 0xFF : -1;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.github.zalesskyi.base.database;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Экспорт таблиц БД russian_morphology в файл снимка, который читает MorphologySnapshot.
+ *
+ * Формат файла (все числа - big-endian):
+ *  заголовок:  magic, version, количество таблиц,
+ *              для каждой таблицы - имя (UTF) и смещение ее секции (long).
+ *  секция таблицы (выровнена по 4 байтам):
+ *              termCount, rowCount, valuesCount, смещения массивов (относительно начала секции),
+ *              int[termCount + 1]  начало каждого слова в массиве символов,
+ *              int[termCount + 1]  номер первой строки каждого слова,
+ *              int[rowCount]       code,
+ *              int[rowCount]       code_parent,
+ *              byte[rowCount]      plural,
+ *              byte[rowCount]      gender (номер значения в таблице значений),
+ *              byte[rowCount]      wcase (номер значения в таблице значений),
+ *              UTF[valuesCount]    таблица строковых значений gender и wcase,
+ *              char[]              символы всех слов подряд.
+ *  Слова отсортированы (String.compareTo), строки одного слова идут подряд.
+ *  Отсутствующие в таблице столбцы и NULL-значения хранятся как -1.
+ *
+ * Запуск: MorphologySnapshotExporter <путь к файлу снимка>
+ */
+public class MorphologySnapshotExporter {
+
+    static final String[] TABLES = {DbSchema.AdjectivesTable.NAME, DbSchema.AdverbsTable.NAME,
+            DbSchema.ConjunctionsTable.NAME, DbSchema.IntroductorsTable.NAME, DbSchema.NounsTable.NAME,
+            DbSchema.NumeralsTable.NAME, DbSchema.ParticlesTable.NAME, DbSchema.PredicativeTable.NAME,
+            DbSchema.PrepositionsTable.NAME, DbSchema.PronounsTable.NAME, DbSchema.VerbsTable.NAME,
+            DbSchema.ParticiplesTable.NAME};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: MorphologySnapshotExporter <snapshot file>");
+            System.exit(1);
+        }
+        DataSource dataSource = new ConnectionPool().setupPool();
+
+        Map<String, TableData> tables = new LinkedHashMap<>();
+        try (Connection con = dataSource.getConnection()) {
+            for (String table : TABLES) {
+                tables.put(table, readTable(con, table));
+                System.out.println(table + ": " + tables.get(table).rows.size() + " rows");
+            }
+        }
+        write(tables, new File(args[0]));
+    }
+
+    /**
+     * Запись снимка в файл.
+     *
+     * @param tables данные таблиц (имя таблицы -> строки)
+     * @param file файл снимка
+     * @throws IOException если не удалось записать файл.
+     */
+    static void write(Map<String, TableData> tables, File file) throws IOException {
+        List<byte[]> sections = new ArrayList<>(tables.size());
+        for (TableData table : tables.values()) {
+            sections.add(table.toSection());
+        }
+
+        int headerSize = 3 * Integer.BYTES;
+        for (String name : tables.keySet()) {
+            headerSize += Short.BYTES + name.getBytes(StandardCharsets.UTF_8).length + Long.BYTES;
+        }
+        headerSize = align(headerSize);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MorphologySnapshot.MAGIC);
+            out.writeInt(MorphologySnapshot.VERSION);
+            out.writeInt(tables.size());
+
+            long offset = headerSize;
+            int i = 0;
+            for (String name : tables.keySet()) {
+                out.writeUTF(name);
+                out.writeLong(offset);
+                offset += sections.get(i++).length;
+            }
+            while (out.size() < headerSize) {
+                out.writeByte(0);
+            }
+            for (byte[] section : sections) {
+                out.write(section);
+            }
+        }
+    }
+
+    private static TableData readTable(Connection con, String table) throws SQLException {
+        TableData data = new TableData();
+        try (Statement stat = con.createStatement();
+             ResultSet set = stat.executeQuery("SELECT * FROM " + table)) {
+            Set<String> columns = new HashSet<>();
+            ResultSetMetaData meta = set.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                columns.add(meta.getColumnName(i).toLowerCase());
+            }
+
+            while (set.next()) {
+                Row row = new Row();
+                row.word = set.getString(DbSchema.NounsTable.Columns.WORD);
+                row.code = getInt(set, columns, DbSchema.NounsTable.Columns.CODE);
+                row.codeParent = getInt(set, columns, DbSchema.NounsTable.Columns.CODE_PARENT);
+                row.plural = getInt(set, columns, DbSchema.NounsTable.Columns.PLURAL);
+                row.gender = getString(set, columns, DbSchema.NounsTable.Columns.GENDER);
+                row.wordCase = getString(set, columns, DbSchema.NounsTable.Columns.WORD_CASE);
+                if (row.word != null) {
+                    data.rows.add(row);
+                }
+            }
+        }
+        return data;
+    }
+
+    private static int getInt(ResultSet set, Set<String> columns, String column) throws SQLException {
+        if (!columns.contains(column)) {
+            return -1;
+        }
+        int value = set.getInt(column);
+        return set.wasNull() ? -1 : value;
+    }
+
+    private static String getString(ResultSet set, Set<String> columns, String column) throws SQLException {
+        return columns.contains(column) ? set.getString(column) : null;
+    }
+
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+
+    /**
+     * Строка таблицы.
+     */
+    static final class Row {
+        String word;
+        int code = -1;
+        int codeParent = -1;
+        int plural = -1;
+        String gender;
+        String wordCase;
+    }
+
+    /**
+     * Строки одной таблицы.
+     */
+    static final class TableData {
+        final List<Row> rows = new ArrayList<>();
+
+        /**
+         * @return секция таблицы в формате снимка
+         */
+        byte[] toSection() throws IOException {
+            rows.sort(Comparator.comparing(row -> row.word));       // сортировка устойчивая
+
+            List<String> values = new ArrayList<>();
+            Map<String, Integer> valueIndexes = new HashMap<>();
+
+            List<String> terms = new ArrayList<>();
+            List<Integer> rowStarts = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                String word = rows.get(i).word;
+                if (terms.isEmpty() || !terms.get(terms.size() - 1).equals(word)) {
+                    terms.add(word);
+                    rowStarts.add(i);
+                }
+            }
+            rowStarts.add(rows.size());
+
+            int termCount = terms.size();
+            int rowCount = rows.size();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            int sectionHeaderSize = 9 * Integer.BYTES;
+            int termStartsOffset = sectionHeaderSize;
+            int rowStartsOffset = termStartsOffset + (termCount + 1) * Integer.BYTES;
+            int codesOffset = rowStartsOffset + (termCount + 1) * Integer.BYTES;
+            int parentCodesOffset = codesOffset + rowCount * Integer.BYTES;
+            int pluralsOffset = parentCodesOffset + rowCount * Integer.BYTES;
+            int gendersOffset = pluralsOffset + rowCount;
+            int casesOffset = gendersOffset + rowCount;
+            int valuesOffset = casesOffset + rowCount;
+
+            byte[] genders = new byte[rowCount];
+            byte[] cases = new byte[rowCount];
+            byte[] plurals = new byte[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                Row row = rows.get(i);
+                plurals[i] = toByte(row.plural);
+                genders[i] = toByte(indexOf(row.gender, values, valueIndexes));
+                cases[i] = toByte(indexOf(row.wordCase, values, valueIndexes));
+            }
+
+            ByteArrayOutputStream valueBytes = new ByteArrayOutputStream();
+            DataOutputStream valuesOut = new DataOutputStream(valueBytes);
+            for (String value : values) {
+                valuesOut.writeUTF(value);
+            }
+            int charsOffset = align(valuesOffset + valueBytes.size());
+
+            out.writeInt(termCount);
+            out.writeInt(rowCount);
+            out.writeInt(values.size());
+            out.writeInt(codesOffset);
+            out.writeInt(parentCodesOffset);
+            out.writeInt(pluralsOffset);
+            out.writeInt(valuesOffset);
+            out.writeInt(charsOffset);
+            out.writeInt(0);                                         // резерв
+
+            int termStart = 0;
+            for (String term : terms) {
+                out.writeInt(termStart);
+                termStart += term.length();
+            }
+            out.writeInt(termStart);
+            for (int rowStart : rowStarts) {
+                out.writeInt(rowStart);
+            }
+            for (Row row : rows) {
+                out.writeInt(row.code);
+            }
+            for (Row row : rows) {
+                out.writeInt(row.codeParent);
+            }
+            out.write(plurals);
+            out.write(genders);
+            out.write(cases);
+            valueBytes.writeTo(out);
+            while (out.size() < charsOffset) {
+                out.writeByte(0);
+            }
+            for (String term : terms) {
+                out.writeChars(term);
+            }
+            while (out.size() % 4 != 0) {
+                out.writeByte(0);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private static int indexOf(String value, List<String> values, Map<String, Integer> valueIndexes) {
+            if (value == null) {
+                return -1;
+            }
+            return valueIndexes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        private static byte toByte(int value) {
+            if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+                throw new IllegalStateException("Value " + value + " doesn't fit into snapshot format");
+            }
+            return (byte) value;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.zalesskyi.base.database;
+
+import com.github.zalesskyi.Metrics;
+import org.apache.commons.dbcp.ConnectionFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Реплика БД морфологии: свой пул соединений и статистика запросов для выбора реплики (ReplicaSet).
+ *
+ * Время запросов сглаживается (экспоненциальное скользящее среднее).
+ * После нескольких ошибок соединения подряд (isConnectionFailure) реплика исключается: запросы на нее
+ * не отправляются, пока проверка (probe) не пройдет успешно. Каждая неудачная проверка откладывает
+ * следующую вдвое дольше. Остальные ошибки (ошибка в запросе, нет свободного соединения в пуле)
+ * говорят не о недоступности реплики, поэтому не учитываются. Проверка открывает отдельное соединение
+ * в обход пула, чтобы реплика с занятым пулом не считалась недоступной.
+ *
+ * Настройки (системные свойства):
+ *  textAbstracting.db.replica.failuresToEject - после скольких ошибок подряд реплика исключается
+ *  textAbstracting.db.replica.ejectionMillis - через сколько исключенная реплика проверяется впервые
+ *  textAbstracting.db.replica.maxEjectionMillis - максимальный интервал между проверками
+ */
+class Replica {
+    private static final String PROPERTY_PREFIX = "textAbstracting.db.replica.";
+    private static final int FAILURES_TO_EJECT = Integer.getInteger(PROPERTY_PREFIX + "failuresToEject", 3);
+    private static final long EJECTION_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong(PROPERTY_PREFIX + "ejectionMillis", 1_000));
+    private static final long MAX_EJECTION_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong(PROPERTY_PREFIX + "maxEjectionMillis", 60_000));
+    private static final double LATENCY_DECAY = 0.2;              // вес нового значения в среднем времени
+    private static final String CONNECTION_EXCEPTION_CLASS = "08";
+    private static final String ADMIN_SHUTDOWN = "57P01";           // коды PostgreSQL: сервер останавливается
+    private static final String CRASH_SHUTDOWN = "57P02";
+    private static final String CANNOT_CONNECT_NOW = "57P03";        // сервер запускается
+
+    private final String name;
+    private final DataSource dataSource;
+    private final ConnectionFactory probeConnections;
+    private final int maxActive;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double latencyNanos;
+    private volatile int consecutiveFailures;
+    private volatile boolean ejected;
+    private long ejectionNanos;
+    private long nextProbe;
+
+    private final LongAdder queries;
+    private final LongAdder failures;
+    private final LongAdder ejections;
+
+    /**
+     * @param name имя реплики (для метрик)
+     * @param dataSource источник соединений реплики (пул)
+     * @param probeConnections источник соединений для проверки исключенной реплики (без пула)
+     * @param maxActive максимальное количество соединений
+     */
+    Replica(String name, DataSource dataSource, ConnectionFactory probeConnections, int maxActive) {
+        this.name = name;
+        this.dataSource = dataSource;
+        this.probeConnections = probeConnections;
+        this.maxActive = maxActive;
+
+        String label = Metrics.label("replica", name);
+        queries = Metrics.counter("db_replica_queries_total", "Database queries by replica.", label);
+        failures = Metrics.counter("db_replica_failures_total", "Database queries that failed with a connection error, by replica.", label);
+        ejections = Metrics.counter("db_replica_ejections_total", "Times a replica was ejected.", label);
+        Metrics.gauge("db_replica_latency_seconds", "Smoothed query time of a replica.", label,
+                () -> latencyNanos / 1e9);
+        Metrics.gauge("db_replica_in_flight", "Queries running on a replica.", label, inFlight::get);
+        Metrics.gauge("db_replica_healthy", "1 if a replica receives queries, 0 if it is ejected.", label,
+                () -> ejected ? 0 : 1);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getMaxActive() {
+        return maxActive;
+    }
+
+    boolean isEjected() {
+        return ejected;
+    }
+
+    /**
+     * @return оценка загрузки: ожидаемое время запроса с учетом уже выполняющихся запросов
+     */
+    double getScore() {
+        return (latencyNanos + 1) * (inFlight.get() + 1);
+    }
+
+    /**
+     * Получение соединения для запроса. После запроса обязательно вызывается release.
+     */
+    Connection getConnection() throws SQLException {
+        inFlight.incrementAndGet();
+        return dataSource.getConnection();
+    }
+
+    /**
+     * @param exc ошибка запроса или получения соединения
+     * @return true, если ошибка говорит о недоступности реплики (нет соединения с сервером,
+     *         сервер останавливается или запускается). Такой запрос имеет смысл повторить на другой реплике.
+     */
+    static boolean isConnectionFailure(SQLException exc) {
+        for (Throwable cause = exc; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException
+                    || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state != null && (state.startsWith(CONNECTION_EXCEPTION_CLASS) || state.equals(ADMIN_SHUTDOWN)
+                        || state.equals(CRASH_SHUTDOWN) || state.equals(CANNOT_CONNECT_NOW))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Учет завершенного запроса.
+     *
+     * @param elapsedNanos время запроса вместе с получением соединения
+     * @param failed true, если запрос (или получение соединения) завершился ошибкой соединения
+     *               (isConnectionFailure)
+     */
+    void release(long elapsedNanos, boolean failed) {
+        inFlight.decrementAndGet();
+        queries.increment();
+        if (!failed) {
+            consecutiveFailures = 0;
+            latencyNanos += (elapsedNanos - latencyNanos) * LATENCY_DECAY;  // потеря значения при гонке допустима
+        } else {
+            failures.increment();
+            if (++consecutiveFailures >= FAILURES_TO_EJECT) {
+                eject();
+            }
+        }
+    }
+
+    /**
+     * Проверка исключенной реплики, если пришло время.
+     * При успехе реплика снова получает запросы, при ошибке следующая проверка откладывается.
+     *
+     * @param validationQuery запрос проверки
+     */
+    void probeIfDue(String validationQuery) {
+        synchronized (this) {
+            if (!ejected || System.nanoTime() - nextProbe < 0) {
+                return;
+            }
+        }
+        try (Connection con = probeConnections.createConnection();
+             Statement stat = con.createStatement()) {
+            stat.execute(validationQuery);
+            synchronized (this) {
+                consecutiveFailures = 0;
+                latencyNanos = 0;                                 // прежнее время устарело
+                ejected = false;
+            }
+        } catch (SQLException | RuntimeException exc) {
+            synchronized (this) {
+                ejectionNanos = Math.min(MAX_EJECTION_NANOS, ejectionNanos * 2);
+                nextProbe = System.nanoTime() + ejectionNanos;
+            }
+        }
+    }
+
+    private synchronized void eject() {
+        if (ejected) {
+            return;
+        }
+        ejected = true;
+        ejectionNanos = EJECTION_NANOS;
+        nextProbe = System.nanoTime() + ejectionNanos;
+        ejections.increment();
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.zalesskyi.base.database;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реплики БД морфологии (таблицы только читаются, поэтому запрос можно выполнить на любой реплике).
+ *
+ * Реплика для запроса выбирается из двух случайных неисключенных реплик - та, у которой меньше
+ * ожидаемое время запроса (Replica.getScore). Так медленные и загруженные реплики получают меньше запросов,
+ * но не все запросы уходят на одну, самую быструю на данный момент реплику.
+ * Исключенные реплики проверяются в фоне и возвращаются после успешной проверки.
+ * Если исключены все реплики, запросы все равно отправляются (на наименее загруженную).
+ *
+ * Настройки (системные свойства):
+ *  textAbstracting.db.urls - адреса реплик через запятую (по умолчанию - textAbstracting.db.url)
+ *  textAbstracting.db.replica.probeIntervalMillis - период проверки исключенных реплик
+ */
+class ReplicaSet {
+    private static final String URLS_PROPERTY = "textAbstracting.db.urls";
+    private static final String URL_PREFIX = "jdbc:postgresql://";
+
+    private final List<Replica> replicas;
+    private final String validationQuery;
+
+    /**
+     * @param replicas реплики
+     * @param validationQuery запрос проверки исключенной реплики
+     */
+    ReplicaSet(List<Replica> replicas, String validationQuery) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("No database replicas");
+        }
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.validationQuery = validationQuery;
+    }
+
+    /**
+     * Создание реплик с пулами соединений по системным свойствам.
+     *
+     * @throws ClassNotFoundException если нет драйвера БД.
+     */
+    static ReplicaSet fromProperties() throws ClassNotFoundException {
+        List<Replica> replicas = new ArrayList<>();
+        for (String url : System.getProperty(URLS_PROPERTY, ConnectionPool.getDefaultUrl()).split(",")) {
+            url = url.trim();
+            if (url.isEmpty()) {
+                continue;
+            }
+            ConnectionPool connectionPool = new ConnectionPool();
+            DataSource dataSource = connectionPool.setupPool(url);
+            String name = url.startsWith(URL_PREFIX) ? url.substring(URL_PREFIX.length()) : url;
+            DbMetrics.registerPool(name, connectionPool.getConnectionPool());
+            replicas.add(new Replica(name, dataSource, connectionPool.getConnectionFactory(),
+                    connectionPool.getConnectionPool().getMaxActive()));
+        }
+        return new ReplicaSet(replicas, ConnectionPool.getValidationQuery());
+    }
+
+    /**
+     * Запуск фоновой проверки исключенных реплик.
+     */
+    void start() {
+        long interval = Long.getLong("textAbstracting.db.replica.probeIntervalMillis", 500);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-prober");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            for (Replica replica : replicas) {
+                replica.probeIfDue(validationQuery);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выбор реплики для запроса.
+     *
+     * @param exclude реплика, которую выбирать нельзя (например, запрос на ней только что завершился ошибкой),
+     *                null - любая
+     * @return реплика, null - кроме exclude реплик нет
+     */
+    Replica choose(Replica exclude) {
+        List<Replica> candidates = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica != exclude && !replica.isEjected()) {
+                candidates.add(replica);
+            }
+        }
+        if (candidates.isEmpty()) {                                      // исключены все - выбираем из всех
+            for (Replica replica : replicas) {
+                if (replica != exclude) {
+                    candidates.add(replica);
+                }
+            }
+            return candidates.isEmpty() ? null : Collections.min(candidates,
+                    (a, b) -> Double.compare(a.getScore(), b.getScore()));
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Replica a = candidates.get(first);
+        Replica b = candidates.get(second);
+        return a.getScore() <= b.getScore() ? a : b;
+    }
+
+    /**
+     * @return количество реплик
+     */
+    int size() {
+        return replicas.size();
+    }
+
+    /**
+     * @return суммарное максимальное количество соединений всех реплик
+     */
+    int getMaxActive() {
+        int maxActive = 0;
+        for (Replica replica : replicas) {
+            maxActive += replica.getMaxActive();
+        }
+        return maxActive;
+    }
+}
@@ -0,0 +1,198 @@
+package com.github.zalesskyi.base.database;
+
+import com.github.zalesskyi.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фильтры Блума слов таблиц частей речи.
+ *
+ * Большинство слов есть не больше чем в одной из таблиц частей речи, поэтому большинство проверок
+ * "есть ли слово в таблице" дают отрицательный ответ. Фильтр отвечает на них без запроса к БД,
+ * в БД проверяются только слова, которые, возможно, есть в таблице.
+ *
+ * Фильтры строятся в фоне при создании и перестраиваются по расписанию (чтобы учесть изменения таблиц).
+ * Пока фильтр таблицы не построен, все слова считаются возможно присутствующими.
+ * Доля ложных срабатываний (слово прошло фильтр, но в таблице его нет) доступна в метриках.
+ *
+ * Настройки (системные свойства):
+ *  textAbstracting.bloomFilterFpp - допустимая вероятность ложного срабатывания (0 - фильтры отключены)
+ *  textAbstracting.bloomFilterRefreshMinutes - период перестроения фильтров в минутах (0 - не перестраивать)
+ */
+class TableFilters {
+    static final String[] TABLES = {DbSchema.NounsTable.NAME, DbSchema.ParticiplesTable.NAME,
+            DbSchema.AdjectivesTable.NAME, DbSchema.VerbsTable.NAME};
+
+    private static final double DEFAULT_FPP = 0.01;
+    private static final long DEFAULT_REFRESH_MINUTES = 60;
+
+    private final MorphologyDbHelper dbHelper;
+    private final double falsePositiveRate;
+    private volatile Map<String, BloomFilter> filters = Collections.emptyMap();
+
+    private final Map<String, Counters> counters = new HashMap<>();
+
+    /**
+     * @param dbHelper БД, из которой строятся фильтры
+     * @param falsePositiveRate допустимая вероятность ложного срабатывания
+     *                          (0 - фильтры отключены и не учитываются в метриках)
+     */
+    TableFilters(MorphologyDbHelper dbHelper, double falsePositiveRate) {
+        this.dbHelper = dbHelper;
+        this.falsePositiveRate = falsePositiveRate;
+        if (falsePositiveRate > 0) {
+            for (String table : TABLES) {
+                counters.put(table, new Counters(table));
+            }
+            Metrics.gauge("db_bloom_filter_bytes", "Memory used by table Bloom filters.", this::sizeInBytes);
+        }
+    }
+
+    /**
+     * @return допустимая вероятность ложного срабатывания из настроек (textAbstracting.bloomFilterFpp)
+     */
+    static double getDefaultFalsePositiveRate() {
+        return Double.parseDouble(System.getProperty("textAbstracting.bloomFilterFpp", Double.toString(DEFAULT_FPP)));
+    }
+
+    /**
+     * Построение фильтров в фоне и запуск их перестроения по расписанию.
+     */
+    void start() {
+        if (falsePositiveRate <= 0) {
+            return;
+        }
+        long refreshMinutes = Long.getLong("textAbstracting.bloomFilterRefreshMinutes", DEFAULT_REFRESH_MINUTES);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bloom-filter-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (refreshMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::rebuild, 0, refreshMinutes, TimeUnit.MINUTES);
+        } else {
+            scheduler.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Построение фильтров всех таблиц заново. Пока строятся новые фильтры, используются старые.
+     */
+    void rebuild() {
+        Map<String, BloomFilter> rebuilt = new HashMap<>();
+        for (String table : TABLES) {
+            try {
+                BloomFilter filter = new BloomFilter(dbHelper.countWords(table), falsePositiveRate);
+                dbHelper.forEachWord(table, word -> {
+                    if (word != null) {
+                        filter.put(word);
+                    }
+                });
+                rebuilt.put(table, filter);
+            } catch (RuntimeException exc) {
+                exc.printStackTrace();
+                BloomFilter old = filters.get(table);       // старый фильтр лучше, чем никакого
+                if (old != null) {
+                    rebuilt.put(table, old);
+                }
+            }
+        }
+        filters = rebuilt;
+    }
+
+    /**
+     * @param table таблица
+     * @return true, если фильтр таблицы построен
+     */
+    boolean hasFilter(String table) {
+        return filters.containsKey(table);
+    }
+
+    /**
+     * @param table таблица
+     * @param word слово
+     * @return false, если слова в таблице точно нет
+     */
+    boolean mightContain(String table, String word) {
+        BloomFilter filter = filters.get(table);
+        if (filter == null) {
+            return true;
+        }
+        Counters tableCounters = counters.get(table);
+        if (filter.mightContain(word)) {
+            tableCounters.passed.increment();
+            return true;
+        }
+        tableCounters.rejected.increment();
+        return false;
+    }
+
+    /**
+     * Учет ложных срабатываний: слова прошли фильтр, но в таблице их не оказалось.
+     *
+     * @param table таблица
+     * @param count количество таких слов
+     */
+    void recordFalsePositives(String table, long count) {
+        Counters tableCounters = counters.get(table);
+        if (tableCounters != null && count > 0) {
+            tableCounters.falsePositives.add(count);
+        }
+    }
+
+    /**
+     * @param table таблица
+     * @param words слова
+     * @return слова, которые, возможно, есть в таблице
+     */
+    Collection<String> filter(String table, Collection<String> words) {
+        if (!hasFilter(table)) {
+            return words;
+        }
+        Collection<String> candidates = new ArrayList<>(words.size());
+        for (String word : words) {
+            if (mightContain(table, word)) {
+                candidates.add(word);
+            }
+        }
+        return candidates;
+    }
+
+    private long sizeInBytes() {
+        long bytes = 0;
+        for (BloomFilter filter : filters.values()) {
+            bytes += filter.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private static final class Counters {
+        private final LongAdder passed;
+        private final LongAdder rejected;
+        private final LongAdder falsePositives;
+
+        private Counters(String table) {
+            String label = Metrics.label("table", table);
+            passed = Metrics.counter("db_bloom_filter_passed_total",
+                    "Words that passed a table Bloom filter and were checked in the database.", label);
+            rejected = Metrics.counter("db_bloom_filter_rejected_total",
+                    "Words rejected by a table Bloom filter without a database query.", label);
+            falsePositives = Metrics.counter("db_bloom_filter_false_positives_total",
+                    "Words that passed a table Bloom filter but were not in the table.", label);
+            Metrics.gauge("db_bloom_filter_false_positive_rate",
+                    "Observed false positive rate of a table Bloom filter.", label,
+                    () -> {
+                        long negatives = rejected.sum() + falsePositives.sum();
+                        return negatives == 0 ? 0 : (double) falsePositives.sum() / negatives;
+                    });
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.zalesskyi.base.database;
+
+import com.github.zalesskyi.Metrics;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Источник морфологических данных из нескольких уровней.
+ *
+ * Уровни - источники в заданном порядке, например, снимок таблиц (MorphologySnapshot)
+ * и БД (MorphologyDbHelper). Слово ищется в таблице сначала в первом уровне, который содержит таблицу
+ * (MorphologyRepository.containsTable), а слова, которых там нет, - в следующем уровне с этой таблицей
+ * и так далее. Поэтому слова, добавленные в БД после выгрузки снимка, находятся, а промахи снимка
+ * доходят до БД (большинство из них отсекают фильтры Блума таблиц, TableFilters).
+ * Список слов таблицы (queryWords) берется из первого уровня, который ее содержит.
+ * Ошибки источников передаются вызывающему (в том числе DatabaseBusyException).
+ * Кэш в памяти перед уровнями - кэш частей речи (PartOfSpeechCache), поэтому здесь ответы не кэшируются.
+ *
+ * Для каждого уровня учитываются пары слово-таблица, которые искались в уровне
+ * (morphology_tier_lookups_total), и пары, которые уровень нашел (morphology_tier_found_total).
+ */
+public class TieredMorphologyRepository implements MorphologyRepository {
+    private final List<Tier> tiers = new ArrayList<>();
+
+    /**
+     * @param tiers уровни в порядке обращения (имя уровня -> источник)
+     */
+    public TieredMorphologyRepository(LinkedHashMap<String, MorphologyRepository> tiers) {
+        tiers.forEach((name, repository) -> this.tiers.add(new Tier(name, repository)));
+    }
+
+    @Override
+    public List<String> queryWords(String from) throws UnsupportedOperationException {
+        for (Tier tier : tiers) {
+            if (tier.repository.containsTable(from)) {
+                return tier.repository.queryWords(from);
+            }
+        }
+        throw new UnsupportedOperationException("No morphology tier contains table " + from);
+    }
+
+    @Override
+    public Map<String, Set<String>> queryTablesContaining(Collection<String> words, String... tables)
+            throws UnsupportedOperationException {
+        Map<String, Set<String>> result = new HashMap<>();
+        if (words.isEmpty()) {
+            return result;
+        }
+        Map<String, Set<String>> missing = new LinkedHashMap<>();               // таблица -> слова, еще не найденные в ней
+        for (String table : tables) {
+            missing.put(table, new HashSet<>(words));
+        }
+
+        // один запрос к каждому уровню: все его таблицы и все слова, не найденные в них предыдущими уровнями
+        for (Tier tier : tiers) {
+            List<String> tierTables = new ArrayList<>();
+            Set<String> tierWords = new HashSet<>();
+            long lookups = 0;
+            for (Map.Entry<String, Set<String>> entry : missing.entrySet()) {
+                if (!entry.getValue().isEmpty() && tier.repository.containsTable(entry.getKey())) {
+                    tierTables.add(entry.getKey());
+                    tierWords.addAll(entry.getValue());
+                    lookups += entry.getValue().size();
+                }
+            }
+            if (tierTables.isEmpty()) {
+                continue;
+            }
+
+            Map<String, Set<String>> found = tier.repository
+                    .queryTablesContaining(tierWords, tierTables.toArray(new String[0]));
+            long foundPairs = 0;
+            for (Map.Entry<String, Set<String>> wordTables : found.entrySet()) {
+                String word = wordTables.getKey();
+                for (String table : wordTables.getValue()) {
+                    Set<String> tableMissing = missing.get(table);
+                    if (tierTables.contains(table) && tableMissing.remove(word)) {
+                        result.computeIfAbsent(word, w -> new HashSet<>()).add(table);
+                        foundPairs++;
+                    }
+                }
+            }
+            tier.record(lookups, foundPairs);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isTableContainsWord(String table, String word) {
+        for (Tier tier : tiers) {
+            if (tier.repository.containsTable(table)) {
+                boolean found = tier.repository.isTableContainsWord(table, word);
+                tier.record(1, found ? 1 : 0);
+                if (found) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getPlurality(String table, String word) {
+        for (Tier tier : tiers) {
+            if (tier.repository.containsTable(table)) {
+                int plurality = tier.repository.getPlurality(table, word);
+                if (plurality != -1) {
+                    return plurality;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean containsTable(String table) {
+        for (Tier tier : tiers) {
+            if (tier.repository.containsTable(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Tier {
+        private final MorphologyRepository repository;
+        private final LongAdder lookups;
+        private final LongAdder found;
+
+        private Tier(String name, MorphologyRepository repository) {
+            this.repository = repository;
+            String label = Metrics.label("tier", name);
+            lookups = Metrics.counter("morphology_tier_lookups_total",
+                    "Word-table pairs looked up in a morphology tier.", label);
+            found = Metrics.counter("morphology_tier_found_total",
+                    "Word-table pairs a morphology tier found (the word is in the table).", label);
+        }
+
+        private void record(long lookups, long found) {
+            this.lookups.add(lookups);
+            this.found.add(found);
+        }
+    }
+}
@@ -6,14 +6,32 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 /**
- * Контейнер для объектов класса Word.
+ * Словарь текста.
+ *
+ * Каждому слову присваивается целочисленный id (TermIndex), данные слов хранятся
+ * в параллельных массивах, индексируемых id. Объекты Word - лишь представления
+ * слов словаря для внешнего кода.
+ * Порядок слов словаря (и сам набор слов после сжатия и стемминга) задается массивом order.
  */
 public class Dictionary {
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int MIN_KEY_SENTENCE_WORDS = 4;                       // ключевое предложение содержит более 3 слов словаря
+    private static final int MAX_SUMMARY_SENTENCES =                           // максимальное количество предложений реферата
+            Integer.getInteger("textAbstracting.maxSummarySentences", Integer.MAX_VALUE);
+
     private final double MIN_BASIC_IMPORTANCE_COEFF;
     private final double MAX_BASIC_IMPORTANCE_COEFF = 1;
     private final double MIN_SECONDARY_IMPORTANCE_COEFF;
 
-    private List<Word> words;
+    private final TermIndex index = new TermIndex();
+    private int[] totalFreqs = new int[DEFAULT_CAPACITY];                       // общая частота в тексте
+    private int[] paragraphsCounts = new int[DEFAULT_CAPACITY];                 // количество абзацев со словом
+    private String[] stems = new String[DEFAULT_CAPACITY];                      // основа слова
+    private Postings[] addresses = new Postings[DEFAULT_CAPACITY];              // адреса слова
+
+    private int[] order = new int[DEFAULT_CAPACITY];                            // id слов словаря по порядку
+    private int size;
+
     private List<Word> mainBasicWords;
     private List<Word> secondaryBasicWords;
 
@@ -25,7 +43,6 @@ public class Dictionary {
     public Dictionary(int paragsCount, int wordsCount) {
         allParagraphsCount = paragsCount;
         allWordsCount = wordsCount;
-        words = new ArrayList<>();
 
         MIN_BASIC_IMPORTANCE_COEFF = (double) 9 / (allParagraphsCount * allWordsCount);
         MIN_SECONDARY_IMPORTANCE_COEFF = Math.pow(0.075 *
@@ -33,20 +50,61 @@ public class Dictionary {
     }
 
     /**
-     * Добавление нового слова в контейнер.
+     * Добавление очередного вхождения слова в словарь.
+     * Если слово уже имеется, то к его значениям
+     * (общая частота, количество абзацев, номера абзацев) добавляется новый адрес.
+     *
+     * @param word слово
+     * @param paragraphNum номер абзаца
+     * @param sentenceNum номер предложения в абзаце
+     */
+    public void addWord(String word, int paragraphNum, int sentenceNum) {
+        addAddress(idOf(word), paragraphNum, sentenceNum);
+    }
+
+    /**
+     * Добавление очередного вхождения слова, заданного символами.
+     * Строка для слова создается, только если слова еще нет в словаре.
+     *
+     * @param chars массив символов
+     * @param offset начало слова в массиве
+     * @param length длина слова
+     * @param paragraphNum номер абзаца
+     * @param sentenceNum номер предложения в абзаце
+     */
+    void addWord(char[] chars, int offset, int length, int paragraphNum, int sentenceNum) {
+        addAddress(register(index.getOrAdd(chars, offset, length)), paragraphNum, sentenceNum);
+    }
+
+    /**
+     * Добавление слова (например, из другого словаря).
      * Если текущее слово уже имеется, то его значения
      * (общая частота, количество абзацев, номера абзацев) просто суммируются.
      *
      * @param word слово, которе необходимо добавить
      **/
     public void addWord(Word word) {
-        for (Word w : words) {
-            if (w.getWord().equals(word.getWord())) {
-                merge(w, word);
-                return;
-            }
+        int id = idOf(word.getWord());
+        addresses[id].addAll(word.postings());
+        paragraphsCounts[id] = addresses[id].paragraphsCount();
+        totalFreqs[id] += word.getTotalFreq();
+    }
+
+    /**
+     * Добавление всех слов другого словаря (например, частичного словаря части текста).
+     * Новые слова добавляются в конец словаря в порядке другого словаря,
+     * у имеющихся слов суммируются общие частоты и объединяются адреса.
+     *
+     * @param other словарь, слова которого необходимо добавить
+     */
+    void mergeFrom(Dictionary other) {
+        for (int i = 0; i < other.size; i++) {
+            int otherId = other.order[i];
+            int id = idOf(other.index.term(otherId));
+            addresses[id].addAll(other.addresses[otherId]);
+            paragraphsCounts[id] = addresses[id].paragraphsCount();
+            totalFreqs[id] += other.totalFreqs[otherId];
         }
-        words.add(word);
     }
 
     /**
@@ -54,15 +112,7 @@ public class Dictionary {
      *  Из словаря выбрасываются слова, которые встречаются только в одном абзаце.
      */
     public void compression() {
-        if (allParagraphsCount < 2) {
-            return;
-        }
-        for (Iterator<Word> it = words.iterator(); it.hasNext(); ) {
-            Word word = it.next();
-            if (word.getParagraphsCount() <= 1 || word.getWord().equals("")) {
-                it.remove();
-            }
-        }
+        finish(true, false);
     }
 
     /**
@@ -70,36 +120,74 @@ public class Dictionary {
      * Слова с одинаковыми основами объединяются.
      */
     public void stemming() {
-        for (int i = 0; i < words.size(); i++) {
-            for (int j = 0; j < words.size(); j++) {
-                if (words.get(i) != words.get(j) &&
-                        words.get(i).getStem().equals(words.get(j).getStem())) {
-                    merge(words.get(i), words.get(j));
-                    words.remove(j);
-                    j--;
-                    i = i > j ? --i : i;
+        finish(false, true);
+    }
+
+    /**
+     * Сжатие словаря и объединение слов с одинаковыми основами за один проход по словарю.
+     * Результат такой же, как у последовательного вызова compression() и stemming().
+     */
+    public void compressAndStem() {
+        finish(true, true);
+    }
+
+    /**
+     * Завершающая обработка словаря за один проход.
+     * Слова с одинаковой основой объединяются с первым из них в порядке словаря,
+     * объединенные слова из словаря удаляются.
+     *
+     * @param compress выбрасывать ли слова, которые встречаются только в одном абзаце
+     * @param stem объединять ли слова с одинаковыми основами
+     */
+    private void finish(boolean compress, boolean stem) {
+        compress = compress && allParagraphsCount >= 2;
+
+        TermIndex stemIndex = stem ? new TermIndex(size) : null;
+        int[] stemOwners = stem ? new int[size] : null;               // id слова, с которым объединяются слова основы
+
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            int id = order[i];
+            if (compress && (paragraphsCounts[id] <= 1 || index.term(id).isEmpty())) {
+                continue;
+            }
+            if (stem) {
+                int stemsCount = stemIndex.size();
+                int stemId = stemIndex.getOrAdd(stem(id));
+                if (stemId < stemsCount) {                                  // основа уже встречалась
+                    merge(stemOwners[stemId], id);
+                    continue;
                 }
+                stemOwners[stemId] = id;
             }
+            order[newSize++] = id;
         }
+        size = newSize;
     }
 
     /**
      * Сортировка словаря.
      * Словоформы сортируются по количеству абзацев, где встречается слово (по убыванию).
+     * Сортировка устойчивая (подсчетом), слова с одинаковым количеством абзацев сохраняют порядок.
      */
     public void sort() {
-        words = words.stream().sorted((word1, word2) -> {
-            int hashWord1 = word1.getParagraphsCount();
-            int hashWord2 = word2.getParagraphsCount();
-
-            if (hashWord1 < hashWord2) {
-                return 1;
-            } else if (hashWord1 == hashWord2) {
-                return 0;
-            } else {
-                return -1;
-            }
-        }).collect(Collectors.toList());
+        int maxCount = 0;
+        for (int i = 0; i < size; i++) {
+            maxCount = Math.max(maxCount, paragraphsCounts[order[i]]);
+        }
+        int[] starts = new int[maxCount + 2];
+        for (int i = 0; i < size; i++) {
+            starts[maxCount - paragraphsCounts[order[i]] + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] sorted = new int[order.length];
+        for (int i = 0; i < size; i++) {
+            int id = order[i];
+            sorted[starts[maxCount - paragraphsCounts[id]]++] = id;
+        }
+        order = sorted;
     }
 
     /**
@@ -109,14 +197,15 @@ public class Dictionary {
         if (mainBasicWords == null) {
             mainBasicWords = new ArrayList<>();
 
-            for (int i = 0; i < words.size() * 0.2; i++) { // todo 0.2
-                mainBasicWords.add(words.get(i));
+            for (int i = 0; i < size * 0.2; i++) { // todo 0.2
+                mainBasicWords.add(new Word(this, order[i]));
             }
 
-            mainBasicWords = mainBasicWords.stream().filter(word -> {
-                String partOfSpeech = MorphologyUtil.getPartOfSpeech(word.getWord());
-                return partOfSpeech != null && partOfSpeech.equals(DbSchema.NounsTable.NAME);
-            }).collect(Collectors.toList());
+            Map<String, String> partsOfSpeech = MorphologyUtil.getPartsOfSpeech(
+                    mainBasicWords.stream().map(Word::getWord).collect(Collectors.toList()));
+            mainBasicWords = mainBasicWords.stream()
+                    .filter(word -> DbSchema.NounsTable.NAME.equals(partsOfSpeech.get(word.getWord())))
+                    .collect(Collectors.toList());
         }
         return mainBasicWords;
     }
@@ -128,8 +217,8 @@ public class Dictionary {
         if (secondaryBasicWords == null) {
             secondaryBasicWords = new ArrayList<>();
 
-            for (int i = 0; i < words.size() * 0.35; i++) {   // todo 0.35
-                secondaryBasicWords.add(words.get(i));
+            for (int i = 0; i < size * 0.35; i++) {   // todo 0.35
+                secondaryBasicWords.add(new Word(this, order[i]));
             }
         }
         return secondaryBasicWords;
@@ -139,77 +228,286 @@ public class Dictionary {
      * @return размер словаря
      */
     public int size() {
-        return words.size();
+        return size;
     }
 
 
+    /**
+     * Ключевое предложение - это предложение, содержащее более 3 слов словаря.
+     * Количество ключевых предложений ограничивается системным свойством
+     * textAbstracting.maxSummarySentences (по умолчанию не ограничено).
+     *
+     * @return адреса ключевых предложений: номер абзаца -> номера предложений
+     */
     public Map<Integer, Set<Integer>> getKeySentencesAddresses() {
-        Map<Integer, List<Integer>> bufAddresses = mergeAddresses();
-        Map<Integer, Set<Integer>> keySentencesAddrs = new TreeMap<>();
-        for (int parag : bufAddresses.keySet()) {
-            List<Integer> sentenses = bufAddresses.get(parag);
-            Set<Integer> keySentensesInThisParag = new TreeSet<>();
-            for (int i = 0; i < sentenses.size(); i++) {
-                int count = 0;
-                for (int j = i + 1; j < sentenses.size(); j++) {
-                    if (sentenses.get(i).equals(sentenses.get(j))) {
-                        count++;
-                    }
-                }
-                if (count > 2) {
-                    keySentensesInThisParag.add(sentenses.get(i));
-                }
+        return getKeySentencesAddresses(MAX_SUMMARY_SENTENCES);
+    }
+
+    /**
+     * Поиск ключевых предложений.
+     * За один проход по адресам слов для каждого предложения накапливаются количество слов словаря
+     * и сумма их коэффициентов важности (массивы индексируются сквозным номером предложения в тексте).
+     * Если ключевых предложений больше, чем maxSentences, то остаются предложения
+     * с наибольшей суммой коэффициентов важности (отбор через ограниченную кучу).
+     *
+     * @param maxSentences максимальное количество ключевых предложений
+     * @return адреса ключевых предложений: номер абзаца -> номера предложений
+     */
+    public Map<Integer, Set<Integer>> getKeySentencesAddresses(int maxSentences) {
+        int[] offsets = sentencesOffsets();
+        int paragraphsCount = offsets.length - 1;
+        int sentencesCount = offsets[paragraphsCount];
+
+        int[] supports = new int[sentencesCount];
+        double[] scores = new double[sentencesCount];
+        double textSize = (double) allWordsCount * allParagraphsCount;
+        for (int i = 0; i < size; i++) {
+            int id = order[i];
+            double coefficient = importanceCoefficient(id, textSize);
+            Postings postings = addresses[id];
+            for (int j = 0; j < postings.size(); j++) {
+                long address = postings.get(j);
+                int sentence = offsets[Postings.paragraphOf(address)] + Postings.sentenceOf(address);
+                supports[sentence]++;
+                scores[sentence] += coefficient;
             }
-            if (keySentensesInThisParag.size() > 0) {
-                keySentencesAddrs.put(parag, keySentensesInThisParag);
+        }
+
+        SentenceHeap heap = new SentenceHeap(Math.max(0, Math.min(maxSentences, sentencesCount)), scores);
+        for (int sentence = 0; sentence < sentencesCount; sentence++) {
+            if (supports[sentence] >= MIN_KEY_SENTENCE_WORDS) {
+                heap.offer(sentence);
             }
         }
+
+        int[] keySentences = heap.toSortedArray();
+        Map<Integer, Set<Integer>> keySentencesAddrs = new TreeMap<>();
+        int paragraph = 0;
+        for (int sentence : keySentences) {
+            while (offsets[paragraph + 1] <= sentence) {
+                paragraph++;
+            }
+            keySentencesAddrs.computeIfAbsent(paragraph, p -> new TreeSet<>()).add(sentence - offsets[paragraph]);
+        }
         return keySentencesAddrs;
     }
 
     @Override
     public String toString() {
-        String textDict = "[";
+        StringBuilder textDict = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            textDict.append(new Word(this, order[i])).append('\n');
+        }
+        return textDict.append(']').toString();
+    }
+
+    // Доступ к данным слова по id (используется представлениями Word).
+
+    String term(int id) {
+        return index.term(id);
+    }
+
+    int totalFreq(int id) {
+        return totalFreqs[id];
+    }
+
+    void setTotalFreq(int id, int totalFreq) {
+        totalFreqs[id] = totalFreq;
+    }
+
+    int paragraphsCount(int id) {
+        return paragraphsCounts[id];
+    }
+
+    Postings postings(int id) {
+        return addresses[id];
+    }
 
-        for (Word w : words) {
-            textDict += w.toString() + "\n";
+    String stem(int id) {
+        if (stems[id] == null) {
+            stems[id] = new PartOfSpeechHelper().stem(index.term(id));
         }
-        return textDict + "]";
+        return stems[id];
+    }
+
+    double importanceCoefficient(int id, int paragraphsCount, int wordsCount) {
+        return importanceCoefficient(id, (double) wordsCount * paragraphsCount);
     }
 
+    /**
+     * Коэффициент важности считается в double: для текстов размером с книгу
+     * произведения частот и количеств абзацев не помещаются в int.
+     *
+     * @param textSize общее количество слов, умноженное на общее число абзацев
+     */
+    private double importanceCoefficient(int id, double textSize) {
+        return (double) totalFreqs[id] * paragraphsCounts[id] / textSize;
+    }
 
     /**
-     * Слияние 2-ух слов.
+     * Добавление адреса слова и увеличение его общей частоты.
+     *
+     * @param id id слова
+     * @param pn номер абзаца
+     * @param sn номер предложения
+     */
+    void addAddress(int id, int pn, int sn) {
+        addAddressOnly(id, pn, sn);
+        totalFreqs[id]++;
+    }
+
+    private void addAddressOnly(int id, int pn, int sn) {
+        addresses[id].add(pn, sn);
+        paragraphsCounts[id] = addresses[id].paragraphsCount();
+    }
+
+    /**
+     * @param word слово
+     * @return id слова. Новое слово добавляется в конец словаря.
+     */
+    private int idOf(String word) {
+        return register(index.getOrAdd(word));
+    }
+
+    /**
+     * Выделение места под данные слова, если слово новое.
      *
-     * @param w1 Слово, с которым сливается 2 слово. После
-     *           слития будет содержать адреса 2-ого слова тоже.
-     * @param w2 Слово, которое после слития должно быть удалено.
-     */
-    private void merge(Word w1, Word w2) {
-        for (int paragraphNum : w2.getParagraphsNums()) {
-            for (int sentenceNum : w2.getSentencesNums(paragraphNum)) {
-                w1.addWordAddress(paragraphNum, sentenceNum);
+     * @param id id слова в индексе
+     * @return id слова
+     */
+    private int register(int id) {
+        if (id == totalFreqs.length) {
+            grow(id * 2);
+        }
+        if (addresses[id] == null) {
+            addresses[id] = new Postings();
+            if (size == order.length) {
+                order = Arrays.copyOf(order, size * 2);
             }
+            order[size++] = id;
         }
+        return id;
     }
 
+    private void grow(int capacity) {
+        totalFreqs = Arrays.copyOf(totalFreqs, capacity);
+        paragraphsCounts = Arrays.copyOf(paragraphsCounts, capacity);
+        stems = Arrays.copyOf(stems, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+    }
 
     /**
-     * Объединение адресов всех слов в одну структуру адресов ключевых слов.
-     * Выполняется для облегчения поиска ключевых предложений.
-     * Ключевое предложение - это предложение содержащее более 3 опорных слов.
+     * Слияние 2-ух слов.
+     *
+     * @param id1 Слово, с которым сливается 2 слово. После
+     *            слития будет содержать адреса 2-ого слова тоже.
+     * @param id2 Слово, которое после слития должно быть удалено.
      */
-    private Map<Integer, List<Integer>> mergeAddresses() {
-        Map<Integer, List<Integer>> addresses = new TreeMap<>();
+    private void merge(int id1, int id2) {
+        addresses[id1].addAll(addresses[id2]);
+        paragraphsCounts[id1] = addresses[id1].paragraphsCount();
+        totalFreqs[id1] += totalFreqs[id2];
+    }
+
 
-        words.forEach(word -> {
-            for (int parag : word.getParagraphsNums()) {
-                if (!addresses.containsKey(parag)) {
-                    addresses.put(parag, new ArrayList<>());
+    /**
+     * Сквозная нумерация предложений текста по адресам слов словаря.
+     *
+     * @return смещения абзацев: сквозной номер предложения = offsets[номер абзаца] + номер предложения,
+     *         последний элемент - количество предложений
+     */
+    private int[] sentencesOffsets() {
+        int paragraphsCount = 0;
+        for (int i = 0; i < size; i++) {
+            Postings postings = addresses[order[i]];
+            if (postings.size() > 0) {
+                paragraphsCount = Math.max(paragraphsCount, Postings.paragraphOf(postings.get(postings.size() - 1)) + 1);
+            }
+        }
+        int[] offsets = new int[paragraphsCount + 1];
+        for (int i = 0; i < size; i++) {
+            Postings postings = addresses[order[i]];
+            for (int j = 0; j < postings.size(); j++) {
+                long address = postings.get(j);
+                int paragraph = Postings.paragraphOf(address);
+                offsets[paragraph + 1] = Math.max(offsets[paragraph + 1], Postings.sentenceOf(address) + 1);
+            }
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        return offsets;
+    }
+
+    /**
+     * Ограниченная куча сквозных номеров предложений.
+     * В корне - худшее из отобранных предложений (с наименьшей суммой коэффициентов важности,
+     * при равенстве - более позднее в тексте).
+     */
+    private static final class SentenceHeap {
+        private final int[] sentences;
+        private final double[] scores;
+        private int size;
+
+        private SentenceHeap(int capacity, double[] scores) {
+            this.sentences = new int[capacity];
+            this.scores = scores;
+        }
+
+        private void offer(int sentence) {
+            if (size < sentences.length) {
+                sentences[size] = sentence;
+                siftUp(size++);
+            } else if (size > 0 && worse(sentences[0], sentence)) {
+                sentences[0] = sentence;
+                siftDown(0);
+            }
+        }
+
+        private int[] toSortedArray() {
+            int[] sorted = Arrays.copyOf(sentences, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private boolean worse(int a, int b) {
+            return scores[a] < scores[b] || (scores[a] == scores[b] && a > b);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!worse(sentences[i], sentences[parent])) {
+                    break;
                 }
-                addresses.get(parag).addAll(word.getSentencesNums(parag));
+                swap(i, parent);
+                i = parent;
             }
-        });
-        return addresses;
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && worse(sentences[left], sentences[worst])) {
+                    worst = left;
+                }
+                if (right < size && worse(sentences[right], sentences[worst])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int sentence = sentences[i];
+            sentences[i] = sentences[j];
+            sentences[j] = sentence;
+        }
     }
 }
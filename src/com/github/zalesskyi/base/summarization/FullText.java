@@ -2,86 +2,118 @@ package com.github.zalesskyi.base.summarization;
 
 import com.github.zalesskyi.Utils;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class FullText {
-    private String sourceText;       // исходный текст (без изменений)
-    private String preparedText;     // обработанный текст (без предлогов, числ, знаков пунктуации и т.д.)
+    /**
+     * Минимальная длина текста (в символах), начиная с которой абзацы разбираются параллельно.
+     * Короткие тексты разбираются в потоке запроса.
+     */
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger("textAbstracting.parallelThreshold", 50_000);
+
+    private CharSequence sourceText; // исходный текст (без изменений)
 
     private List<Paragraph> paragraphs;
+    private Dictionary words;        // слова текста (без предлогов, числ, знаков пунктуации и т.д.)
+    private int wordsCount;          // количество слов исходного текста
 
-    public FullText(String text) {
-        Utils.log(Integer.toString(text.length()));
+    public FullText(CharSequence text) {
+        Utils.debug(() -> Integer.toString(text.length()));
         sourceText = text;
-        preparedText = prepareText(text);
         initParagraphs();
     }
 
 
     /**
+     * Словарь строится при разборе текста, метод возвращает его без копирования.
+     *
      * @return все обработанные слова
      */
     public Dictionary getAllWords() {
-        Dictionary words = new Dictionary(paragraphs.size(),
-                MorphologyUtil.getWordsCountOf(sourceText));
-        paragraphs.forEach(paragraph ->
-           paragraph.getSentences().forEach(sentence -> {
-               sentence.getWords().forEach(words::addWord);
-           })
-        );
         return words;
     }
 
 
+    /**
+     * @return количество слов исходного текста (вместе со стоп-словами)
+     */
+    public int getWordsCount() {
+        return wordsCount;
+    }
+
     public String getKeySentences(Map<Integer, Set<Integer>> addresses) {
-        String keyText = "";
-        for (Map.Entry<Integer, Set<Integer>> entry : addresses.entrySet()) {
-            keyText += "\t";
-            for (int i : entry.getValue()) {
-                keyText += paragraphs.get(entry.getKey()).getSentences().get(i).getFullSentence() + ". ";
-            }
-            keyText += "\n";
+        StringBuilder keyText = new StringBuilder();
+        try {
+            appendKeySentences(addresses, keyText);
+        } catch (IOException exc) {
+            throw new IllegalStateException(exc);   // StringBuilder не бросает IOException
         }
-        return keyText;
+        return keyText.toString();
     }
 
     /**
-     * Обработка исходного текста.
-     * Включает в себя:
-     * todo удалить запятые
-     *  1) Удаление предлогов
-     *  2) Удаление частиц
-     *  3) Удаление местоимений
-     *  4) Удаление наречий
-     *  5) Удаление числительных
-     *  6) Удаление вводных слов
-     *  7) Удаление союзов
+     * Запись ключевых предложений: каждый абзац с новой строки, предложения копируются
+     * из исходного текста без промежуточных строк.
      *
-     * @param text исходный текст
-     * @return обработанный текст
+     * @param addresses адреса ключевых предложений (абзац - номера предложений)
+     * @param out куда записывать
+     * @throws IOException ошибка записи
      */
-    private String prepareText(String text) {
-        text = MorphologyUtil.removeStopWordsFrom(text.toLowerCase());
-        return text;
+    public void appendKeySentences(Map<Integer, Set<Integer>> addresses, Appendable out) throws IOException {
+        for (Map.Entry<Integer, Set<Integer>> entry : addresses.entrySet()) {
+            out.append('\t');
+            Paragraph paragraph = paragraphs.get(entry.getKey());
+            for (int i : entry.getValue()) {
+                paragraph.getSentence(i).appendTo(out);
+                out.append(". ");
+            }
+            out.append('\n');
+        }
     }
 
     /**
-     * Разбиение текста на абзацы.
-     * Инициализация массива абзацев.
+     * Разбиение текста на абзацы и разбор абзацев.
+     * Каждый абзац обрабатывается отдельно за один проход (TextTokenizer):
+     *  1) Разбиение на предложения и слова
+     *  2) Приведение слов к нижнему регистру, удаление знаков пунктуации
+     *  3) Удаление стоп-слов (предлогов, частиц, местоимений, наречий,
+     *     числительных, вводных слов, союзов)
+     *  4) Подсчет слов
+     * Длинные тексты разбираются параллельно (fork/join), короткие - в текущем потоке.
      */
     private void initParagraphs() {
-        String[] sourceParags = sourceText.split(Utils.Constants.NEW_PARAGRAPH_MARKER_REGEX);
-        String[] preparedParags = preparedText.split(Utils.Constants.NEW_PARAGRAPH_MARKER_REGEX);
-
-        assert sourceParags.length == preparedParags.length;
+        int[] paragraphBounds = TextTokenizer.splitParagraphs(sourceText);
+        Paragraph[] parsedParags = new Paragraph[paragraphBounds.length / 2];
 
-        paragraphs = new ArrayList<>(sourceParags.length);
+        wordsCount = MorphologyUtil.getWordsCountOf(sourceText);
+        ParagraphsAnalysisTask task = new ParagraphsAnalysisTask(sourceText, paragraphBounds, parsedParags,
+                getStopWordsLexicon(), wordsCount);
+        if (sourceText.length() >= PARALLEL_THRESHOLD && parsedParags.length > 1) {
+            words = ForkJoinPool.commonPool().invoke(task);
+        } else {
+            words = task.computeDirectly();
+        }
+        paragraphs = Arrays.asList(parsedParags);
+    }
 
-        for (int i = 0; i < sourceParags.length; i++) {
-            paragraphs.add(new Paragraph(sourceParags[i], preparedParags[i], i));
+    /**
+     * Без словаря стоп-слова не удаляются, и результат реферирования приблизительный
+     * (учитывается в MorphologyUtil.getThreadDegradedCount).
+     *
+     * @return словарь стоп-слов, null если его не удалось загрузить
+     */
+    private static StopWordsLexicon getStopWordsLexicon() {
+        try {
+            return StopWordsLexicon.getInstance();
+        } catch (Exception exc) {
+            Utils.warn("Stop words are not removed: " + exc);
+            MorphologyUtil.markThreadDegraded();
+            return null;
         }
     }
 }
@@ -1,49 +1,79 @@
 package com.github.zalesskyi.base.summarization;
 
+import com.github.zalesskyi.Metrics;
+import com.github.zalesskyi.base.database.DatabaseBusyException;
 import com.github.zalesskyi.base.database.DbSchema;
-import com.github.zalesskyi.base.database.MorphologyDbHelper;
+import com.github.zalesskyi.base.database.MorphologyRepositories;
+import com.github.zalesskyi.base.database.MorphologyRepository;
 import com.sun.istack.internal.Nullable;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
 
 /**
  * Класс, предоставляющий набор полезных функций.
  **/
 public class MorphologyUtil {
 
-    private static final String[] STOP_WORDS_TABLES = {DbSchema.ParticlesTable.NAME,
-            DbSchema.PronounsTable.NAME, DbSchema.AdverbsTable.NAME,
-            DbSchema.NumeralsTable.NAME, DbSchema.IntroductorsTable.NAME,
-            DbSchema.ConjunctionsTable.NAME, DbSchema.PrepositionsTable.NAME};
+    private static final LongAdder GUESSED_WORDS = Metrics.counter("pos_guessed_words_total",
+            "Words classified by suffix heuristics because the morphology database was busy.", "");
+
+    private static final ThreadLocal<long[]> THREAD_DEGRADED = ThreadLocal.withInitial(() -> new long[1]);
+
+    private static final String[] PART_OF_SPEECH_TABLES = {DbSchema.NounsTable.NAME,
+            DbSchema.ParticiplesTable.NAME, DbSchema.AdjectivesTable.NAME, DbSchema.VerbsTable.NAME};
+
+    /**
+     * Порядок поиска слова (предположительно сущ.) в таблицах.
+     * Для конкретного слова Pn = 0.5
+     *                       Pp = 0.01
+     *                       Pa = 0.007
+     *                       Pv = 0.001
+     */
+    private static final String[] NOUN_TABLES_ORDER = {DbSchema.NounsTable.NAME,
+            DbSchema.ParticiplesTable.NAME, DbSchema.AdjectivesTable.NAME, DbSchema.VerbsTable.NAME};
+
+    /**
+     * Порядок поиска слова (предположительно прич.) в таблицах.
+     * Для конкретного слова Pn = 0.03
+     *                       Pp = 0.87
+     *                       Pa = 0.118
+     *                       Pv = 0.04
+     */
+    private static final String[] PARTICIPLE_TABLES_ORDER = {DbSchema.ParticiplesTable.NAME,
+            DbSchema.AdjectivesTable.NAME, DbSchema.VerbsTable.NAME, DbSchema.NounsTable.NAME};
 
-    private static final String NUMBER_REGEX = " \\d+ ";
+    /**
+     * Порядок поиска слова (предположительно прил.) в таблицах.
+     * Для конкретного слова Pn = 0.5
+     *                       Pp = 0.01
+     *                       Pa = 0.007
+     *                       Pv = 0.001
+     */
+    private static final String[] ADJECTIVE_TABLES_ORDER = {DbSchema.AdjectivesTable.NAME,
+            DbSchema.ParticiplesTable.NAME, DbSchema.NounsTable.NAME, DbSchema.VerbsTable.NAME};
 
     /**
-     * Метод, удаляющий все стоп-слова из исходного текста.
+     * Порядок поиска слова (предположительно глаг.) в таблицах.
+     * Для конкретного слова Pn = 0.08
+     *                       Pp = 0.49
+     *                       Pa = 0.2
+     *                       Pv = 0.86
+     */
+    private static final String[] VERB_TABLES_ORDER = {DbSchema.VerbsTable.NAME,
+            DbSchema.ParticiplesTable.NAME, DbSchema.AdjectivesTable.NAME, DbSchema.NounsTable.NAME};
+
+    /**
+     * Загрузка словаря стоп-слов.
+     * Вызывается при старте сервера, чтобы первый запрос не ждал загрузки словаря.
      *
-     * @param text исходный текст
-     * @return текст без стоповых слов
+     * @throws Exception если не удалось загрузить стоп-слова из БД.
      */
-    public static String removeStopWordsFrom(String text) {
-        try {
-            MorphologyDbHelper dbHelper = MorphologyDbHelper.getInstance();
-            List<String> stopWords;
-            text = text.replaceAll("[\\p{Punct}&&[^.!?\\$_]]", "");
-            for (String table : STOP_WORDS_TABLES) {
-                stopWords = dbHelper.queryWords(table);
-                for (String stopWord : stopWords) {
-                    text = text.replaceAll(" " + stopWord + " ", " ");
-                }
-            }
-            text = text.replaceAll(NUMBER_REGEX, " ");
-            System.out.println(text); // todo
-        } catch (Exception exc) {
-            exc.printStackTrace();
-        }
-        return text;
+    public static void preloadStopWords() throws Exception {
+        StopWordsLexicon.getInstance();
     }
 
-
     /**
      * Метод, возвращающий количество слов в заданном тексте.
      *
@@ -51,13 +81,27 @@ public class MorphologyUtil {
      *
      * @return количество слов
      */
-    public static int getWordsCountOf(String text) {
-        return text.split(" ").length;
+    public static int getWordsCountOf(CharSequence text) {
+        int last = text.length() - 1;               // как text.split(" "): пустые слова в конце не считаются
+        while (last >= 0 && text.charAt(last) == ' ') {
+            last--;
+        }
+        if (last < 0) {
+            return text.length() == 0 ? 1 : 0;
+        }
+        int count = 1;
+        for (int i = 0; i < last; i++) {
+            if (text.charAt(i) == ' ') {
+                count++;
+            }
+        }
+        return count;
     }
 
 
     /**
      * Метод, возвращающий имя таблицы, которая содержит слово.
+     * Результат (в том числе отрицательный) сохраняется в общем для всех запросов кэше.
      *
      * @param word слово
      * @return если слово найдено - имя таблицы.
@@ -65,131 +109,133 @@ public class MorphologyUtil {
      */
     @Nullable
     public static String getPartOfSpeech(String word) {
-        String tableName = null;
+        return getPartsOfSpeech(Collections.singletonList(word)).get(word);
+    }
+
+    /**
+     * Метод, возвращающий имена таблиц, которые содержат слова.
+     * Слова, которых нет в кэше, ищутся в БД одним запросом.
+     * Если БД перегружена, часть речи таких слов определяется приблизительно, по окончанию
+     * (PartOfSpeechHelper), и в кэш не сохраняется. Если БД недоступна, такие слова считаются ненайденными.
+     * В обоих случаях результат приблизительный - это учитывается в getThreadDegradedCount.
+     *
+     * @param words слова
+     * @return имя таблицы для каждого найденного слова.
+     *         Для слов, которых нет в БД, имя таблицы - null.
+     */
+    public static Map<String, String> getPartsOfSpeech(Collection<String> words) {
         try {
-            MorphologyDbHelper db = MorphologyDbHelper.getInstance();
-            if (PartOfSpeechHelper.isNoun(word)) {
-                tableName = getTableNameOfNounWord(word, db);
-            } else if (PartOfSpeechHelper.isParticiple(word)) {
-                tableName = getTableNameOfParticipleWord(word, db);
-            } else if (PartOfSpeechHelper.isAdjective(word)) {
-                tableName = getTableNameOfAdjectiveWord(word, db);
-            } else if (PartOfSpeechHelper.isVerb(word)) {
-                tableName = getTableNameOfVerbWord(word, db);
-            } else {
-                tableName = getTableNameOfNounWord(word, db);
-            }
+            MorphologyRepository repository = MorphologyRepositories.getDefault();
+            return PartOfSpeechCache.getInstance().getAll(words, missing -> queryPartsOfSpeech(missing, repository));
+        } catch (DatabaseBusyException exc) {
+            markThreadDegraded();
+            return guessPartsOfSpeech(words);
         } catch (Exception exc) {
             exc.printStackTrace();
-            return null;
+            markThreadDegraded();
+            return Collections.emptyMap();
         }
-        return tableName;
     }
 
     /**
-     * Поиск слова (предположительно сущ.) в таблицах.
-     * Для конкретного слова Pn = 0.5
-     *                       Pp = 0.01
-     *                       Pa = 0.007
-     *                       Pv = 0.001
+     * Количество приблизительных результатов (части речи определены без БД, стоп-слова не удалены),
+     * полученных текущим потоком. Если оно изменилось за время реферирования, результат реферирования
+     * приблизительный.
      *
-     * @param word слово
-     * @param db используется для запросов к БД
-     * @return имя таблицы, если слово есть в БД
-     *         null, если слова в БД нет
+     * @return количество приблизительных результатов
      */
-    @Nullable
-    private static String getTableNameOfNounWord(String word, MorphologyDbHelper db) {
-       if (db.isTableContainsWord(DbSchema.NounsTable.NAME, word)) {
-           return DbSchema.NounsTable.NAME;
-       } else if (db.isTableContainsWord(DbSchema.ParticiplesTable.NAME, word)) {
-           return DbSchema.ParticiplesTable.NAME;
-       } else if (db.isTableContainsWord(DbSchema.AdjectivesTable.NAME, word)) {
-           return DbSchema.AdjectivesTable.NAME;
-       } else if (db.isTableContainsWord(DbSchema.VerbsTable.NAME, word)) {
-           return DbSchema.VerbsTable.NAME;
-       }
-        return null;
+    public static long getThreadDegradedCount() {
+        return THREAD_DEGRADED.get()[0];
     }
 
+    /**
+     * Учет приблизительного результата, полученного текущим потоком (см. getThreadDegradedCount).
+     */
+    static void markThreadDegraded() {
+        THREAD_DEGRADED.get()[0]++;
+    }
 
     /**
-     * Поиск слова (предположительно прич.) в таблицах.
-     * Для конкретного слова Pn = 0.03
-     *                       Pp = 0.87
-     *                       Pa = 0.118
-     *                       Pv = 0.04
-     *
-     * @param word слово
-     * @param db используется для запросов к БД
-     * @return имя таблицы, если слово есть в БД
-     *         null, если слова в БД нет
+     * @return статистика кэша частей речи
      */
-    @Nullable
-    private static String getTableNameOfParticipleWord(String word, MorphologyDbHelper db) {
-        if (db.isTableContainsWord(DbSchema.ParticiplesTable.NAME, word)) {
-            return DbSchema.ParticiplesTable.NAME;
-        } else if (db.isTableContainsWord(DbSchema.AdjectivesTable.NAME, word)) {
-            return DbSchema.AdjectivesTable.NAME;
-        } else if (db.isTableContainsWord(DbSchema.VerbsTable.NAME, word)) {
-            return DbSchema.VerbsTable.NAME;
-        }  else if (db.isTableContainsWord(DbSchema.NounsTable.NAME, word)) {
-            return DbSchema.NounsTable.NAME;
-        }
-        return null;
+    public static String getPartOfSpeechCacheStats() {
+        return PartOfSpeechCache.getInstance().toString();
     }
 
+    /**
+     * Определение частей речи слов по морфологическим данным.
+     * Если слово есть в нескольких таблицах, таблица выбирается
+     * в порядке, зависящем от предположительной части речи слова.
+     *
+     * @param words слова
+     * @param repository источник морфологических данных
+     * @return имя таблицы для каждого найденного слова
+     */
+    private static Map<String, String> queryPartsOfSpeech(Collection<String> words, MorphologyRepository repository) {
+        Map<String, Set<String>> tablesByWord = repository.queryTablesContaining(words, PART_OF_SPEECH_TABLES);
+        Map<String, String> partsOfSpeech = new HashMap<>();
+        tablesByWord.forEach((word, tables) -> {
+            for (String table : getTablesOrderOf(word)) {
+                if (tables.contains(table)) {
+                    partsOfSpeech.put(word, table);
+                    break;
+                }
+            }
+        });
+        return partsOfSpeech;
+    }
 
     /**
-     * Поиск слова (предположительно прил.) в таблицах.
-     * Для конкретного слова Pn = 0.5
-     *                       Pp = 0.01
-     *                       Pa = 0.007
-     *                       Pv = 0.001
+     * Приблизительное определение частей речи слов, которых нет в кэше.
      *
+     * @param words слова
+     * @return имя таблицы для каждого слова (из кэша или предполагаемое по окончанию)
+     */
+    private static Map<String, String> guessPartsOfSpeech(Collection<String> words) {
+        Map<String, String> partsOfSpeech = PartOfSpeechCache.getInstance().getPresent(words);
+        for (String word : words) {
+            if (!partsOfSpeech.containsKey(word)) {
+                partsOfSpeech.put(word, guessPartOfSpeech(word));
+                GUESSED_WORDS.increment();
+            }
+        }
+        return partsOfSpeech;
+    }
+
+    /**
      * @param word слово
-     * @param db используется для запросов к БД
-     * @return имя таблицы, если слово есть в БД
-     *         null, если слова в БД нет
+     * @return предполагаемое имя таблицы слова, null - часть речи не определена
      */
     @Nullable
-    private static String getTableNameOfAdjectiveWord(String word, MorphologyDbHelper db) {
-        if (db.isTableContainsWord(DbSchema.AdjectivesTable.NAME, word)) {
-            return DbSchema.AdjectivesTable.NAME;
-        } else if (db.isTableContainsWord(DbSchema.ParticiplesTable.NAME, word)) {
-            return DbSchema.ParticiplesTable.NAME;
-        } else if (db.isTableContainsWord(DbSchema.NounsTable.NAME, word)) {
+    private static String guessPartOfSpeech(String word) {
+        if (PartOfSpeechHelper.isNoun(word)) {
             return DbSchema.NounsTable.NAME;
-        }  else if (db.isTableContainsWord(DbSchema.VerbsTable.NAME, word)) {
+        } else if (PartOfSpeechHelper.isParticiple(word)) {
+            return DbSchema.ParticiplesTable.NAME;
+        } else if (PartOfSpeechHelper.isAdjective(word)) {
+            return DbSchema.AdjectivesTable.NAME;
+        } else if (PartOfSpeechHelper.isVerb(word)) {
             return DbSchema.VerbsTable.NAME;
+        } else {
+            return null;
         }
-        return null;
     }
 
-
     /**
-     * Поиск слова (предположительно глаг.) в таблицах.
-     * Для конкретного слова Pn = 0.08
-     *                       Pp = 0.49
-     *                       Pa = 0.2
-     *                       Pv = 0.86
-     *
      * @param word слово
-     * @param db используется для запросов к БД
-     * @return имя таблицы, если слово есть в БД
-     *         null, если слова в БД нет
+     * @return порядок поиска слова по таблицам
      */
-    @Nullable
-    private static String getTableNameOfVerbWord(String word, MorphologyDbHelper db) {
-        if (db.isTableContainsWord(DbSchema.VerbsTable.NAME, word)) {
-            return DbSchema.VerbsTable.NAME;
-        } else if (db.isTableContainsWord(DbSchema.ParticiplesTable.NAME, word)) {
-            return DbSchema.ParticiplesTable.NAME;
-        } else if (db.isTableContainsWord(DbSchema.AdjectivesTable.NAME, word)) {
-            return DbSchema.AdjectivesTable.NAME;
-        }  else if (db.isTableContainsWord(DbSchema.NounsTable.NAME, word)) {
-            return DbSchema.NounsTable.NAME;
+    private static String[] getTablesOrderOf(String word) {
+        if (PartOfSpeechHelper.isNoun(word)) {
+            return NOUN_TABLES_ORDER;
+        } else if (PartOfSpeechHelper.isParticiple(word)) {
+            return PARTICIPLE_TABLES_ORDER;
+        } else if (PartOfSpeechHelper.isAdjective(word)) {
+            return ADJECTIVE_TABLES_ORDER;
+        } else if (PartOfSpeechHelper.isVerb(word)) {
+            return VERB_TABLES_ORDER;
+        } else {
+            return NOUN_TABLES_ORDER;
         }
-        return null;
     }
-}
\ No newline at end of file
+}
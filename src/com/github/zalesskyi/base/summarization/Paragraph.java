@@ -1,45 +1,38 @@
 package com.github.zalesskyi.base.summarization;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Класс, иекапсулирующий данные об отдельном абзаце.
+ * Абзац не хранит копий текста - только границы своих предложений в исходном тексте.
  **/
 class Paragraph {
-    private List<Sentence> sentences;
+    private CharSequence text;
+    private int[] sentenceBounds;       // начало и конец каждого предложения в исходном тексте
     private int number;
 
     /**
-     * @param sourceParagraph исходный текст этого параграфа
-     * @param preparedParagraph текст параграфа без стоповых слов
+     * @param text исходный текст
      * @param paragraphNum номер этого параграфа
+     * @param sentenceBounds начало и конец каждого предложения (по два элемента на предложение)
      */
-    public Paragraph(String sourceParagraph, String preparedParagraph, int paragraphNum) {
+    public Paragraph(CharSequence text, int paragraphNum, int[] sentenceBounds) {
+        this.text = text;
+        this.sentenceBounds = sentenceBounds;
         number = paragraphNum;
-        initSentences(sourceParagraph, preparedParagraph);
     }
 
-    public List<Sentence> getSentences() {
-        return sentences;
+    /**
+     * @return количество предложений в абзаце
+     */
+    public int getSentencesCount() {
+        return sentenceBounds.length / 2;
     }
 
     /**
-     * Разбиение абзаца на предложения.
-     * Иннициализация массива предложений.
-     *
-     * @param sourcePar исходный параграф
-     * @param preparedPar обработанный параграф (без предлогов и т.п.)
+     * @param sentenceNum номер предложения в абзаце
+     * @return предложение
      */
-    private void initSentences(String sourcePar, String preparedPar) {
-        String[] sourceSentences = sourcePar.split("\\. |\\? |! ");
-        String[] preparedSentences = preparedPar.split("\\. |\\? |! ");
-
-        assert (sourceSentences.length == preparedSentences.length);
-
-        sentences = new ArrayList<>(sourceSentences.length);
-        for (int i = 0; i < sourceSentences.length; i++) {
-            sentences.add(new Sentence(i, number, sourceSentences[i], preparedSentences[i]));
-        }
+    public Sentence getSentence(int sentenceNum) {
+        return new Sentence(sentenceNum, number, text,
+                sentenceBounds[sentenceNum * 2], sentenceBounds[sentenceNum * 2 + 1]);
     }
 }
@@ -0,0 +1,81 @@
+package com.github.zalesskyi.base.summarization;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Разбор диапазона абзацев текста: разбиение на предложения и слова, удаление стоп-слов
+ * и подсчет слов в собственном (частичном) словаре.
+ * Абзацы независимы друг от друга, поэтому диапазон делится пополам и половины
+ * разбираются параллельно. Частичные словари затем сливаются попарно (деревом):
+ * словарь правой половины добавляется к словарю левой, так что порядок слов
+ * в итоговом словаре совпадает с порядком их первого появления в тексте.
+ */
+class ParagraphsAnalysisTask extends RecursiveTask<Dictionary> {
+    private static final long serialVersionUID = 1L;
+
+    private final CharSequence text;
+    private final int[] paragraphBounds;             // начало и конец каждого абзаца в тексте
+    private final Paragraph[] paragraphs;            // результат разбора (заполняется задачами)
+    private final StopWordsLexicon lexicon;
+    private final int wordsCount;
+    private final int from;
+    private final int to;
+    private final int leafSize;                       // максимальное количество абзацев в одной задаче
+
+    /**
+     * @param text исходный текст
+     * @param paragraphBounds начало и конец каждого абзаца (по два элемента на абзац)
+     * @param paragraphs массив для разобранных абзацев
+     * @param lexicon словарь стоп-слов, null - стоп-слова не удаляются
+     * @param wordsCount общее количество слов в тексте
+     */
+    ParagraphsAnalysisTask(CharSequence text, int[] paragraphBounds, Paragraph[] paragraphs,
+                           StopWordsLexicon lexicon, int wordsCount) {
+        this(text, paragraphBounds, paragraphs, lexicon, wordsCount, 0, paragraphs.length,
+                Math.max(1, paragraphs.length / (ForkJoinPool.getCommonPoolParallelism() * 4)));
+    }
+
+    private ParagraphsAnalysisTask(CharSequence text, int[] paragraphBounds, Paragraph[] paragraphs,
+                                   StopWordsLexicon lexicon, int wordsCount, int from, int to, int leafSize) {
+        this.text = text;
+        this.paragraphBounds = paragraphBounds;
+        this.paragraphs = paragraphs;
+        this.lexicon = lexicon;
+        this.wordsCount = wordsCount;
+        this.from = from;
+        this.to = to;
+        this.leafSize = leafSize;
+    }
+
+    @Override
+    protected Dictionary compute() {
+        if (to - from <= leafSize) {
+            return computeDirectly();
+        }
+        int middle = (from + to) >>> 1;
+        ParagraphsAnalysisTask left = new ParagraphsAnalysisTask(text, paragraphBounds, paragraphs, lexicon,
+                wordsCount, from, middle, leafSize);
+        ParagraphsAnalysisTask right = new ParagraphsAnalysisTask(text, paragraphBounds, paragraphs, lexicon,
+                wordsCount, middle, to, leafSize);
+        left.fork();
+        Dictionary rightWords = right.compute();
+        Dictionary leftWords = left.join();
+        leftWords.mergeFrom(rightWords);
+        return leftWords;
+    }
+
+    /**
+     * Последовательный разбор всего диапазона в текущем потоке.
+     *
+     * @return словарь абзацев диапазона
+     */
+    Dictionary computeDirectly() {
+        Dictionary words = new Dictionary(paragraphs.length, wordsCount);
+        TextTokenizer tokenizer = new TextTokenizer(lexicon);
+        for (int i = from; i < to; i++) {
+            paragraphs[i] = tokenizer.analyse(text, paragraphBounds[i * 2], paragraphBounds[i * 2 + 1], i, words);
+        }
+        return words;
+    }
+}
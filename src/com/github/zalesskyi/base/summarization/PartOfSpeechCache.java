@@ -0,0 +1,221 @@
+package com.github.zalesskyi.base.summarization;
+
+import com.github.zalesskyi.Metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Общий для всех запросов кэш частей речи (слово -> имя таблицы).
+ *
+ * Кэшируются и отрицательные результаты (слово не найдено ни в одной таблице).
+ * Размер кэша ограничен. При переполнении вытесняются редко запрашиваемые слова:
+ * у каждой записи есть счетчик обращений, который уменьшается вдвое после каждых maxSize вставок,
+ * чтобы часто встречающиеся слова оставались в кэше, а устаревшие - постепенно вытеснялись.
+ *
+ * Это единственный уровень в памяти перед источниками морфологических данных (TieredMorphologyRepository):
+ * к источникам обращаются только за словами, которых нет в кэше. Размер и доля попаданий общего кэша
+ * доступны в метриках (pos_cache_words, pos_cache_hit_ratio).
+ */
+class PartOfSpeechCache {
+    private static final int DEFAULT_MAX_SIZE = 200_000;
+    private static final int MAX_FREQUENCY = 255;
+    private static final double EVICTION_FRACTION = 0.1;          // доля записей, удаляемых при переполнении
+
+    private static final String NOT_FOUND = "";                   // слова нет ни в одной таблице
+
+    private static final PartOfSpeechCache INSTANCE =
+            new PartOfSpeechCache(Integer.getInteger("textAbstracting.posCacheSize", DEFAULT_MAX_SIZE));
+
+    static {
+        Metrics.gauge("pos_cache_words", "Words in the part-of-speech cache.", INSTANCE::size);
+        Metrics.gauge("pos_cache_hit_ratio", "Share of part-of-speech lookups answered by the cache.", () -> {
+            long hits = INSTANCE.getHitCount();
+            long total = hits + INSTANCE.getMissCount();
+            return total == 0 ? 0 : (double) hits / total;
+        });
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final int maxSize;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder insertionsSinceAging = new LongAdder();
+
+    static PartOfSpeechCache getInstance() {
+        return INSTANCE;
+    }
+
+    PartOfSpeechCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        entries = new ConcurrentHashMap<>(Math.min(maxSize, 1 << 16));
+    }
+
+    /**
+     * Получение частей речи слов.
+     * Слова, которых нет в кэше, передаются в resolver одним списком,
+     * результат сохраняется в кэше.
+     *
+     * @param words слова
+     * @param resolver функция, определяющая имена таблиц по словам.
+     *                 Слова, которых нет ни в одной таблице, в ее результат не попадают.
+     * @return имя таблицы для каждого слова (null - слово не найдено)
+     */
+    Map<String, String> getAll(Collection<String> words,
+                               Function<Collection<String>, Map<String, String>> resolver) {
+        Map<String, String> partsOfSpeech = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String word : words) {
+            Entry entry = entries.get(word);
+            if (entry != null) {
+                hits.increment();
+                entry.touch();
+                partsOfSpeech.put(word, entry.value());
+            } else if (missing.add(word)) {
+                misses.increment();
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, String> resolved = resolver.apply(missing);
+            for (String word : missing) {
+                String tableName = resolved.get(word);
+                put(word, tableName);
+                partsOfSpeech.put(word, tableName);
+            }
+        }
+        return partsOfSpeech;
+    }
+
+    /**
+     * Получение частей речи слов, которые уже есть в кэше (без обращения к источнику).
+     *
+     * @param words слова
+     * @return имя таблицы для каждого слова из кэша (null - слово не найдено).
+     *         Слов, которых нет в кэше, в результате нет.
+     */
+    Map<String, String> getPresent(Collection<String> words) {
+        Map<String, String> partsOfSpeech = new HashMap<>();
+        for (String word : words) {
+            Entry entry = entries.get(word);
+            if (entry != null) {
+                partsOfSpeech.put(word, entry.value());
+            }
+        }
+        return partsOfSpeech;
+    }
+
+    /**
+     * Сохранение части речи слова в кэше.
+     *
+     * @param word слово
+     * @param tableName имя таблицы, null - слово не найдено
+     */
+    void put(String word, String tableName) {
+        if (entries.putIfAbsent(word, new Entry(tableName == null ? NOT_FOUND : tableName)) == null) {
+            insertionsSinceAging.increment();
+        }
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "size: " + size()
+                + " hits: " + getHitCount()
+                + " misses: " + getMissCount()
+                + " evictions: " + getEvictionCount();
+    }
+
+    /**
+     * Вытеснение наименее часто запрашиваемых слов.
+     * Выполняется только одним потоком; остальные потоки не ждут его завершения.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int size = entries.size();
+            if (size <= maxSize) {
+                return;
+            }
+            int toEvict = size - maxSize + (int) (maxSize * EVICTION_FRACTION);
+
+            int[] histogram = new int[MAX_FREQUENCY + 1];
+            for (Entry entry : entries.values()) {
+                histogram[entry.frequency]++;
+            }
+            int threshold = 0;                                    // записи с меньшей частотой удаляются все
+            int belowThreshold = 0;
+            while (threshold < MAX_FREQUENCY && belowThreshold + histogram[threshold] < toEvict) {
+                belowThreshold += histogram[threshold];
+                threshold++;
+            }
+            int atThreshold = toEvict - belowThreshold;           // сколько записей с частотой threshold удалить
+
+            boolean aging = insertionsSinceAging.sum() >= maxSize;
+            if (aging) {
+                insertionsSinceAging.reset();
+            }
+
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Entry entry = it.next().getValue();
+                int frequency = entry.frequency;
+                if (frequency < threshold || (frequency == threshold && atThreshold-- > 0)) {
+                    it.remove();
+                    evictions.increment();
+                } else if (aging) {
+                    entry.frequency = frequency >> 1;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final String tableName;
+        private volatile int frequency;
+
+        private Entry(String tableName) {
+            this.tableName = tableName;
+        }
+
+        private void touch() {
+            int frequency = this.frequency;
+            if (frequency < MAX_FREQUENCY) {
+                this.frequency = frequency + 1;                   // потеря части инкрементов при гонке допустима
+            }
+        }
+
+        private String value() {
+            return tableName == NOT_FOUND ? null : tableName;
+        }
+    }
+}
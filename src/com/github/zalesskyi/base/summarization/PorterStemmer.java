@@ -0,0 +1,348 @@
+package com.github.zalesskyi.base.summarization;
+
+import java.util.Arrays;
+
+/**
+ * Реализация алгоритма стемминга Портера без регулярных выражений.
+ * http://snowball.tartarus.org/algorithms/russian/stemmer.html
+ *
+ * Слово обрабатывается на месте в переиспользуемом буфере, окончания ищутся
+ * по заранее построенным деревьям суффиксов (по одному на каждую группу окончаний).
+ * Результат полностью совпадает с прежней реализацией на регулярных выражениях,
+ * в том числе с ее особенностями: найденное окончание удаляется из RV во всех местах,
+ * где оно встречается (как String.replace), а не только в конце слова.
+ *
+ * Объект не потокобезопасен - каждому потоку нужен свой экземпляр.
+ */
+class PorterStemmer {
+    private static final String VOWELS = "аеиоуыэюя";
+
+    private static final SuffixTrie PERFECTIVE_GERUND = new SuffixTrie()
+            .add("ив", "ивши", "ившись", "ыв", "ывши", "ывшись")
+            .addAfterAOrYa("в", "вши", "вшись");
+    private static final SuffixTrie REFLEXIVE = new SuffixTrie()
+            .add("ся", "сь");
+    private static final SuffixTrie ADJECTIVE = new SuffixTrie()
+            .add("ее", "ие", "ые", "ое", "ими", "ыми", "ей", "ий", "ый", "ой", "ем", "им", "ым", "ом",
+                    "его", "ого", "ему", "ому", "их", "ых", "ую", "юю", "ая", "яя", "ою", "ею");
+    private static final SuffixTrie VERB = new SuffixTrie()
+            .add("ила", "ыла", "ена", "ейте", "уйте", "ите", "или", "ыли", "ей", "уй", "ил", "ыл", "им", "ым",
+                    "ен", "ило", "ыло", "ено", "ят", "ует", "уют", "ит", "ыт", "ены", "ить", "ыть", "ишь", "ую", "ю")
+            .addWithPrefixes("а|я", "ла", "на", "ете", "йте", "ли", "й", "л", "ем", "н", "ло", "но", "ет", "ют",
+                    "ны", "ть", "ешь", "нно");
+    private static final SuffixTrie NOUN = new SuffixTrie()
+            .add("а", "ев", "ов", "ие", "ье", "е", "иями", "ями", "ами", "еи", "ии", "и", "ией", "ей", "ой", "ий",
+                    "й", "иям", "ям", "ием", "ем", "ам", "ом", "о", "у", "ах", "иях", "ях", "ы", "ь", "ию", "ью",
+                    "ю", "ия", "ья", "я");
+
+    private char[] buffer = new char[32];
+    private final char[] target = new char[8];
+
+    private int start;                                  // начало RV
+    private int end;                                    // конец RV
+
+    /**
+     * @param word слово
+     * @return основа слова
+     */
+    String stem(String word) {
+        word = word.toLowerCase();
+        int length = word.length();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        word.getChars(0, length, buffer, 0);
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == 'ё') {
+                buffer[i] = 'е';
+            }
+        }
+
+        if (!splitRv(length)) {
+            return "";
+        }
+        step1();
+        step2();
+        step3();
+        step4();
+
+        return new String(buffer, 0, end);
+    }
+
+    /**
+     * Выделение RV - части слова после первой гласной.
+     * Повторяет поведение ^(.*?[аеиоуыэюя])(.*)$: символ '.' не совпадает с переводами строки,
+     * а '$' допускает один перевод строки в самом конце слова.
+     *
+     * @param length длина слова
+     * @return false, если слово не удовлетворяет шаблону
+     */
+    private boolean splitRv(int length) {
+        int i = 0;
+        while (i < length && !isVowel(buffer[i])) {
+            if (isLineTerminator(buffer[i])) {
+                return false;
+            }
+            i++;
+        }
+        if (i == length) {
+            return false;
+        }
+        start = i + 1;
+        end = length;
+        for (int j = start; j < length; j++) {
+            if (isLineTerminator(buffer[j])) {
+                boolean lastChar = j == length - 1;
+                boolean lastCrLf = j == length - 2 && buffer[j] == '\r' && buffer[j + 1] == '\n';
+                if (!lastChar && !lastCrLf) {
+                    return false;
+                }
+                end = j;
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Шаг 1:
+     *  1) Поиск PERFECTIVE_GERUND-окончания в слове.
+     *     Если найдено - удаляем. Завершение шага 1.
+     *  2) Поиск REFLEXIVE-окончания.
+     *     Если найдено - удаляем.
+     *  3) Поиск ADJECTIVE-окончания в слове.
+     *     Если найдено - удаляем. Завершение шага 1.
+     *  4) Поиск VERB-окончания в слове.
+     *     Если найдено - удаляем. Завершение шага 1.
+     *  5) Поиск NOUN-окончания в слове.
+     *     Если найдено - удаляем. Завершение шага 1.
+     */
+    private void step1() {
+        if (deleteSuffix(PERFECTIVE_GERUND)) {
+            return;
+        }
+        deleteSuffix(REFLEXIVE);
+        if (!deleteSuffix(ADJECTIVE) && !deleteSuffix(VERB)) {
+            deleteSuffix(NOUN);
+        }
+    }
+
+    /**
+     * Шаг 2:
+     *  Если слово оканчивается на "и", то удаляем "и".
+     */
+    private void step2() {
+        deleteSuffix(endsWith("и"));
+    }
+
+    /**
+     * Шаг 3:
+     *  Если в R2 присутствует DERIVATIONAL-окончание, то удаляем его.
+     */
+    private void step3() {
+        int length = endsWith("ость");
+        if (length == 0) {
+            length = endsWith("ост");
+        }
+        if (length == 0) {
+            return;
+        }
+        for (int i = start; i + 1 < end - length; i++) {     // согласная, за которой следует гласная
+            if (!isVowel(buffer[i]) && isVowel(buffer[i + 1])) {
+                deleteSuffix(length);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Шаг 4:
+     *  1) Если слово заканчивается на "ь", то удаляем "ь".
+     *  2) Иначе, удаляем SUPERLATIVE-окончание и заменяем "нн" на "н".
+     */
+    private void step4() {
+        if (deleteSuffix(endsWith("ь"))) {
+            return;
+        }
+        if (!deleteSuffix(endsWith("ейше"))) {
+            deleteSuffix(endsWith("ейш"));
+        }
+        if (endsWith("нн") > 0) {
+            replaceAll(2, 1);
+        }
+    }
+
+    /**
+     * @param trie окончания
+     * @return true, если окончание найдено и удалено
+     */
+    private boolean deleteSuffix(SuffixTrie trie) {
+        return deleteSuffix(trie.longestSuffix(buffer, start, end));
+    }
+
+    /**
+     * Удаление из RV всех вхождений окончания заданной длины.
+     *
+     * @param length длина окончания, 0 - окончания нет
+     * @return true, если окончание было удалено
+     */
+    private boolean deleteSuffix(int length) {
+        if (length == 0) {
+            return false;
+        }
+        replaceAll(length, 0);
+        return true;
+    }
+
+    /**
+     * Замена всех вхождений окончания RV (слева направо, без перекрытий)
+     * на его начало заданной длины.
+     *
+     * @param length длина окончания
+     * @param keep сколько первых символов окончания оставить
+     */
+    private void replaceAll(int length, int keep) {
+        System.arraycopy(buffer, end - length, target, 0, length);
+        int read = start;
+        int write = start;
+        while (read < end) {
+            if (read + length <= end && matchesTarget(read, length)) {
+                for (int i = 0; i < keep; i++) {
+                    buffer[write++] = target[i];
+                }
+                read += length;
+            } else {
+                buffer[write++] = buffer[read++];
+            }
+        }
+        end = write;
+    }
+
+    private boolean matchesTarget(int from, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer[from + i] != target[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param suffix окончание
+     * @return длина окончания, если RV оканчивается на него, иначе 0
+     */
+    private int endsWith(String suffix) {
+        int length = suffix.length();
+        if (end - start < length) {
+            return 0;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[end - length + i] != suffix.charAt(i)) {
+                return 0;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isVowel(char c) {
+        return VOWELS.indexOf(c) >= 0;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Дерево окончаний, построенное по перевернутым окончаниям.
+     * Позволяет за один проход от конца слова найти самое длинное окончание.
+     */
+    private static final class SuffixTrie {
+        private final Node root = new Node();
+
+        private SuffixTrie add(String... suffixes) {
+            for (String suffix : suffixes) {
+                node(suffix).terminal = true;
+            }
+            return this;
+        }
+
+        /**
+         * Окончания, которые считаются найденными только после "а" или "я"
+         * (сама буква окончанию не принадлежит).
+         */
+        private SuffixTrie addAfterAOrYa(String... suffixes) {
+            for (String suffix : suffixes) {
+                node(suffix).afterAOrYa = true;
+            }
+            return this;
+        }
+
+        /**
+         * Окончания, которые начинаются с одной из заданных букв (буква принадлежит окончанию).
+         */
+        private SuffixTrie addWithPrefixes(String prefixes, String... suffixes) {
+            for (int i = 0; i < prefixes.length(); i++) {
+                for (String suffix : suffixes) {
+                    add(prefixes.charAt(i) + suffix);
+                }
+            }
+            return this;
+        }
+
+        private Node node(String suffix) {
+            Node node = root;
+            for (int i = suffix.length() - 1; i >= 0; i--) {
+                node = node.childOrCreate(suffix.charAt(i));
+            }
+            return node;
+        }
+
+        /**
+         * @return длина самого длинного окончания в word[from, to), 0 если окончаний нет
+         */
+        private int longestSuffix(char[] word, int from, int to) {
+            int longest = 0;
+            Node node = root;
+            for (int i = to - 1; i >= from; i--) {
+                node = node.child(word[i]);
+                if (node == null) {
+                    break;
+                }
+                if (node.terminal
+                        || (node.afterAOrYa && i > from && (word[i - 1] == 'а' || word[i - 1] == 'я'))) {
+                    longest = to - i;
+                }
+            }
+            return longest;
+        }
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+        private boolean afterAOrYa;
+
+        private Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node childOrCreate(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                int n = keys.length;
+                keys = Arrays.copyOf(keys, n + 1);
+                children = Arrays.copyOf(children, n + 1);
+                keys[n] = c;
+                children[n] = child;
+            }
+            return child;
+        }
+    }
+}
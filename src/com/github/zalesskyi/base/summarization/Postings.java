@@ -0,0 +1,199 @@
+package com.github.zalesskyi.base.summarization;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Адреса слова в тексте (абзац, предложение) без повторов.
+ * Хранятся в отсортированном массиве long: номер абзаца в старших 32 битах,
+ * номер предложения - в младших. Слова добавляются в порядке текста,
+ * поэтому обычно новый адрес просто дописывается в конец массива.
+ */
+class Postings {
+    private static final long[] EMPTY = new long[0];
+
+    private long[] addresses;
+    private int size;
+    private int paragraphsCount;
+
+    Postings() {
+        addresses = EMPTY;
+    }
+
+    /**
+     * @return упакованный адрес
+     */
+    static long pack(int paragraphNum, int sentenceNum) {
+        return ((long) paragraphNum << 32) | (sentenceNum & 0xFFFFFFFFL);
+    }
+
+    static int paragraphOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    static int sentenceOf(long address) {
+        return (int) address;
+    }
+
+    /**
+     * Добавление адреса.
+     *
+     * @param paragraphNum номер абзаца
+     * @param sentenceNum номер предложения
+     */
+    void add(int paragraphNum, int sentenceNum) {
+        long address = pack(paragraphNum, sentenceNum);
+        if (size == 0 || addresses[size - 1] < address) {
+            if (size == 0 || paragraphOf(addresses[size - 1]) != paragraphNum) {
+                paragraphsCount++;
+            }
+            ensureCapacity(size + 1);
+            addresses[size++] = address;
+            return;
+        }
+
+        int pos = Arrays.binarySearch(addresses, 0, size, address);
+        if (pos >= 0) {
+            return;
+        }
+        pos = -pos - 1;
+        boolean newParagraph = (pos == 0 || paragraphOf(addresses[pos - 1]) != paragraphNum)
+                && paragraphOf(addresses[pos]) != paragraphNum;
+        ensureCapacity(size + 1);
+        System.arraycopy(addresses, pos, addresses, pos + 1, size - pos);
+        addresses[pos] = address;
+        size++;
+        if (newParagraph) {
+            paragraphsCount++;
+        }
+    }
+
+    /**
+     * Слияние с адресами другого слова (слиянием двух отсортированных массивов).
+     *
+     * @param other адреса другого слова
+     */
+    void addAll(Postings other) {
+        if (other.size == 0) {
+            return;
+        }
+        if (size == 0 || addresses[size - 1] < other.addresses[0]) {        // адреса другого слова - после всех адресов
+            ensureCapacity(size + other.size);
+            System.arraycopy(other.addresses, 0, addresses, size, other.size);
+            paragraphsCount += other.paragraphsCount;
+            if (size > 0 && paragraphOf(addresses[size - 1]) == paragraphOf(other.addresses[0])) {
+                paragraphsCount--;
+            }
+            size += other.size;
+            return;
+        }
+        long[] merged = new long[size + other.size];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        paragraphsCount = 0;
+        while (i < size || j < other.size) {
+            long address;
+            if (j == other.size || (i < size && addresses[i] < other.addresses[j])) {
+                address = addresses[i++];
+            } else if (i == size || other.addresses[j] < addresses[i]) {
+                address = other.addresses[j++];
+            } else {
+                address = addresses[i++];
+                j++;
+            }
+            if (n == 0 || paragraphOf(merged[n - 1]) != paragraphOf(address)) {
+                paragraphsCount++;
+            }
+            merged[n++] = address;
+        }
+        addresses = merged;
+        size = n;
+    }
+
+    /**
+     * @return количество адресов
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param i номер адреса
+     * @return упакованный адрес
+     */
+    long get(int i) {
+        return addresses[i];
+    }
+
+    /**
+     * Копирование всех упакованных адресов в массив.
+     *
+     * @param dest массив
+     * @param destPos позиция в массиве
+     */
+    void copyTo(long[] dest, int destPos) {
+        System.arraycopy(addresses, 0, dest, destPos, size);
+    }
+
+    /**
+     * @return количество различных абзацев
+     */
+    int paragraphsCount() {
+        return paragraphsCount;
+    }
+
+    /**
+     * @return номера абзацев
+     */
+    Set<Integer> paragraphs() {
+        Set<Integer> paragraphs = new TreeSet<>();
+        for (int i = 0; i < size; i++) {
+            paragraphs.add(paragraphOf(addresses[i]));
+        }
+        return paragraphs;
+    }
+
+    /**
+     * @param paragraphNum номер абзаца
+     * @return номера предложений в абзаце, null если слова в абзаце нет
+     */
+    Set<Integer> sentences(int paragraphNum) {
+        int from = -Arrays.binarySearch(addresses, 0, size, pack(paragraphNum, 0) - 1) - 1;
+        Set<Integer> sentences = null;
+        for (int i = from; i < size && paragraphOf(addresses[i]) == paragraphNum; i++) {
+            if (sentences == null) {
+                sentences = new TreeSet<>();
+            }
+            sentences.add(sentenceOf(addresses[i]));
+        }
+        return sentences;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            int paragraph = paragraphOf(addresses[i]);
+            boolean first = i == 0 || paragraphOf(addresses[i - 1]) != paragraph;
+            boolean last = i == size - 1 || paragraphOf(addresses[i + 1]) != paragraph;
+            if (first) {
+                builder.append(i == 0 ? "" : ", ").append(paragraph).append("=[");
+            } else {
+                builder.append(", ");
+            }
+            builder.append(sentenceOf(addresses[i]));
+            if (last) {
+                builder.append(']');
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (addresses.length < capacity) {
+            addresses = Arrays.copyOf(addresses, Math.max(capacity, Math.max(4, addresses.length * 2)));
+        }
+    }
+}
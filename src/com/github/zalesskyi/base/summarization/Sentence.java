@@ -1,37 +1,46 @@
 package com.github.zalesskyi.base.summarization;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 /**
  * Класс, инкапсулирующий данные об отдельном предложении.
+ * Предложение - представление фрагмента исходного текста.
  */
 class Sentence {
     private int sentenceNumber;
     private int paragraphNumber;
 
-    private String fullSentence;
-    private List<Word> preparedWords;
+    private CharSequence text;
+    private int start;
+    private int end;
 
     /**
      * @param sentenceNum Номер этого предложения
      * @param paragraphNum номер абзаца, в котором находится это предложение
-     * @param sourceSentence исходный текст этого предложения
-     * @param preparedSentence текст предложения без стоповых слов
+     * @param text исходный текст
+     * @param start начало предложения в исходном тексте
+     * @param end конец предложения в исходном тексте
      */
-    public Sentence(int sentenceNum, int paragraphNum, String sourceSentence, String preparedSentence) {
+    public Sentence(int sentenceNum, int paragraphNum, CharSequence text, int start, int end) {
         sentenceNumber = sentenceNum;
         paragraphNumber = paragraphNum;
-        fullSentence = sourceSentence;
+        this.text = text;
+        this.start = start;
+        this.end = end;
+    }
 
-        initPreparedWords(preparedSentence);
+    /**
+     * @return номер этого предложения в абзаце
+     */
+    public int getSentenceNumber() {
+        return sentenceNumber;
     }
 
     /**
-     * @return обработанные слова предложения
+     * @return номер абзаца, в котором находится это предложение
      */
-    public List<Word> getWords() {
-        return preparedWords;
+    public int getParagraphNumber() {
+        return paragraphNumber;
     }
 
 
@@ -39,23 +48,17 @@ class Sentence {
      * @return полное, необработанное предложение
      */
     public String getFullSentence() {
-        return fullSentence;
+        return text.subSequence(start, end).toString();
     }
 
     /**
-     * Разбиение предложения на слова.
-     * Иннициализация массива слов.
+     * Запись полного предложения без создания промежуточной строки.
      *
-     * @param preparedSentence предложения, не содержащее предлогов и т.п.
+     * @param out куда записывать
+     * @throws IOException ошибка записи
      */
-    private void initPreparedWords(String preparedSentence) {
-        String[] words = preparedSentence.split(" ");
-
-        preparedWords = new ArrayList<>(words.length);
-        for (int i = 0; i < words.length; i++) {
-            String prevWord = i > 0 ? words[i - 1] : null;
-            preparedWords.add(new Word(words[i], sentenceNumber, paragraphNumber, prevWord));
-        }
+    public void appendTo(Appendable out) throws IOException {
+        out.append(text, start, end);
     }
 }
 
@@ -0,0 +1,220 @@
+package com.github.zalesskyi.base.summarization;
+
+import com.github.zalesskyi.base.database.DbSchema;
+import com.github.zalesskyi.base.database.MorphologyRepositories;
+import com.github.zalesskyi.base.database.MorphologyRepository;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Словарь стоп-слов.
+ * Загружается из БД один раз и хранится в памяти в виде префиксного дерева по словам,
+ * поэтому вводные конструкции из нескольких слов удаляются так же, как и одиночные стоп-слова.
+ * Стоп-слова удаляются из текста при его разборе на слова (TextTokenizer), за один проход.
+ *
+ * Слова стоп-слов пронумерованы (TermIndex), дерево построено по номерам слов.
+ * Поэтому слова текста можно проверять без создания строк: по символам находится номер слова,
+ * а дальше поиск идет по номерам (см. tokenId и matchLength).
+ */
+class StopWordsLexicon {
+
+    private static final String[] STOP_WORDS_TABLES = {DbSchema.ParticlesTable.NAME,
+            DbSchema.PronounsTable.NAME, DbSchema.AdverbsTable.NAME,
+            DbSchema.NumeralsTable.NAME, DbSchema.IntroductorsTable.NAME,
+            DbSchema.ConjunctionsTable.NAME, DbSchema.PrepositionsTable.NAME};
+
+    private static final String PUNCTUATION_TO_KEEP = ".!?$_";
+
+    static final int UNKNOWN_TOKEN = -1;                 // слово не входит ни в одно стоп-слово
+    static final int NUMBER_TOKEN = -2;                  // число (удаляется как стоп-слово)
+
+    private static volatile StopWordsLexicon instance;
+
+    private final TermIndex vocabulary = new TermIndex();
+    private final BitSet numberTokens = new BitSet();    // номера слов стоп-слов, которые являются числами
+    private final Node root = new Node();
+    private int size;
+
+    private static final long RETRY_MILLIS = Long.getLong("textAbstracting.stopWordsRetryMillis", 30_000);
+
+    private static Exception loadError;                  // последняя ошибка загрузки (под блокировкой класса)
+    private static long retryAt;                         // время следующей попытки загрузки после ошибки
+
+    /**
+     * Словарь загружается при первом обращении. Если загрузить его не удалось, следующая попытка
+     * выполняется не раньше чем через textAbstracting.stopWordsRetryMillis мс, а до этого
+     * сразу выбрасывается исключение - запросы не перечитывают таблицы стоп-слов каждый раз.
+     *
+     * @return словарь стоп-слов
+     * @throws Exception если словарь не загружен
+     */
+    static StopWordsLexicon getInstance() throws Exception {
+        if (instance == null) {
+            synchronized (StopWordsLexicon.class) {
+                if (instance == null) {
+                    if (loadError != null && System.currentTimeMillis() < retryAt) {
+                        throw new IllegalStateException("Stop words are not loaded: " + loadError);
+                    }
+                    try {
+                        instance = load(MorphologyRepositories.getDefault());
+                        loadError = null;
+                    } catch (Exception exc) {
+                        exc.printStackTrace();
+                        loadError = exc;
+                        retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+                        throw exc;
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Загрузка стоп-слов из всех таблиц стоп-слов.
+     *
+     * @param repository источник морфологических данных
+     * @return заполненный словарь
+     */
+    private static StopWordsLexicon load(MorphologyRepository repository) {
+        StopWordsLexicon lexicon = new StopWordsLexicon();
+        for (String table : STOP_WORDS_TABLES) {
+            repository.queryWords(table).forEach(lexicon::add);
+        }
+        return lexicon;
+    }
+
+    /**
+     * Добавление стоп-слова (или вводной конструкции из нескольких слов).
+     *
+     * @param stopWord стоп-слово
+     */
+    void add(String stopWord) {
+        if (stopWord == null) {
+            return;
+        }
+        Node node = root;
+        for (String token : stopWord.trim().split(" ")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int tokenId = vocabulary.getOrAdd(token);
+            if (isNumber(token.toCharArray(), 0, token.length())) {
+                numberTokens.set(tokenId);
+            }
+            node = node.nextOrCreate(tokenId);
+        }
+        if (node != root && !node.terminal) {
+            node.terminal = true;
+            size++;
+        }
+    }
+
+    /**
+     * @return количество стоп-слов в словаре
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param chars массив символов (слово в нижнем регистре, без знаков пунктуации)
+     * @param offset начало слова в массиве
+     * @param length длина слова
+     * @return номер слова в словаре стоп-слов, NUMBER_TOKEN для чисел, иначе UNKNOWN_TOKEN
+     */
+    int tokenId(char[] chars, int offset, int length) {
+        int id = vocabulary.get(chars, offset, length);
+        if (id < 0 && isNumber(chars, offset, length)) {
+            return NUMBER_TOKEN;
+        }
+        return id < 0 ? UNKNOWN_TOKEN : id;
+    }
+
+    /**
+     * @param tokenIds номера слов текста (см. tokenId)
+     * @param from номер первого слова
+     * @param last номер последнего слова текста
+     * @return количество слов самого длинного стоп-слова, начинающегося с заданного слова.
+     *         0, если такого нет.
+     */
+    int matchLength(int[] tokenIds, int from, int last) {
+        int matched = 0;
+        Node node = root;
+        for (int j = from; j < last && tokenIds[j] >= 0; j++) {   // за стоп-словом обязательно должен следовать пробел
+            node = node.next(tokenIds[j]);
+            if (node == null) {
+                break;
+            }
+            if (node.terminal) {
+                matched = j - from + 1;
+            }
+        }
+        if (matched == 0 && from < last && isNumberToken(tokenIds[from])) {
+            matched = 1;
+        }
+        return matched;
+    }
+
+    private boolean isNumberToken(int tokenId) {
+        return tokenId == NUMBER_TOKEN || (tokenId >= 0 && numberTokens.get(tokenId));
+    }
+
+    private static boolean isNumber(char[] chars, int offset, int length) {
+        if (length == 0) {
+            return false;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Аналог [\p{Punct}&&[^.!?\$_]].
+     */
+    static boolean isRemovablePunctuation(char c) {
+        boolean isPunct = (c >= '!' && c <= '/') || (c >= ':' && c <= '@')
+                || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+        return isPunct && PUNCTUATION_TO_KEEP.indexOf(c) < 0;
+    }
+
+    /**
+     * Узел префиксного дерева.
+     * Переходы хранятся в отсортированном массиве номеров слов.
+     */
+    private static final class Node {
+        private int[] keys = new int[0];
+        private Node[] children = new Node[0];
+        private int count;
+        private boolean terminal;
+
+        private Node next(int tokenId) {
+            int i = Arrays.binarySearch(keys, 0, count, tokenId);
+            return i < 0 ? null : children[i];
+        }
+
+        private Node nextOrCreate(int tokenId) {
+            int i = Arrays.binarySearch(keys, 0, count, tokenId);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(2, count * 2));
+                children = Arrays.copyOf(children, keys.length);
+            }
+            System.arraycopy(keys, i, keys, i + 1, count - i);
+            System.arraycopy(children, i, children, i + 1, count - i);
+            Node child = new Node();
+            keys[i] = tokenId;
+            children[i] = child;
+            count++;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.zalesskyi.base.summarization;
+
+import java.util.Arrays;
+
+/**
+ * Индекс слов: слово -> целочисленный номер (id).
+ * Номера выдаются подряд, начиная с 0, в порядке добавления слов.
+ * Хэш-таблица с открытой адресацией (линейное пробирование) хранит id + 1, 0 - пустая ячейка.
+ * Слово можно искать и по фрагменту массива символов: строка создается только при добавлении нового слова.
+ */
+class TermIndex {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private String[] terms;
+    private int[] hashes;
+    private int[] slots;
+    private int size;
+
+    TermIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    TermIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, DEFAULT_CAPACITY / 2) * 2 - 1) << 1;
+        slots = new int[capacity];
+        terms = new String[capacity / 2];
+        hashes = new int[capacity / 2];
+    }
+
+    /**
+     * @param term слово
+     * @return id слова, -1 если слова нет в индексе
+     */
+    int get(String term) {
+        int hash = hash(term);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (hashes[id] == hash && terms[id].equals(term)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Получение id слова. Если слова нет в индексе, оно добавляется.
+     *
+     * @param term слово
+     * @return id слова
+     */
+    int getOrAdd(String term) {
+        int hash = hash(term);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for (; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                break;
+            }
+            if (hashes[id] == hash && terms[id].equals(term)) {
+                return id;
+            }
+        }
+        return add(term, hash, slot);
+    }
+
+    /**
+     * @param chars массив символов
+     * @param offset начало слова в массиве
+     * @param length длина слова
+     * @return id слова, -1 если слова нет в индексе
+     */
+    int get(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (hashes[id] == hash && equals(terms[id], chars, offset, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Получение id слова, заданного символами. Если слова нет в индексе, оно добавляется.
+     *
+     * @param chars массив символов
+     * @param offset начало слова в массиве
+     * @param length длина слова
+     * @return id слова
+     */
+    int getOrAdd(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for (; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                break;
+            }
+            if (hashes[id] == hash && equals(terms[id], chars, offset, length)) {
+                return id;
+            }
+        }
+        return add(new String(chars, offset, length), hash, slot);
+    }
+
+    /**
+     * @param id id слова
+     * @return слово
+     */
+    String term(int id) {
+        return terms[id];
+    }
+
+    /**
+     * @return количество слов в индексе
+     */
+    int size() {
+        return size;
+    }
+
+    private int add(String term, int hash, int slot) {
+        int id = size++;
+        if (id == terms.length) {
+            terms = Arrays.copyOf(terms, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        terms[id] = term;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {                        // коэффициент заполнения не больше 0.5
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        int[] newSlots = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = id + 1;
+        }
+        slots = newSlots;
+    }
+
+    private static int hash(String term) {
+        int h = term.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Тот же хэш, что и для строки из этих символов.
+     */
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(String term, char[] chars, int offset, int length) {
+        if (term.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (term.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
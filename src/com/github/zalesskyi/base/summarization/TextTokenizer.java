@@ -0,0 +1,264 @@
+package com.github.zalesskyi.base.summarization;
+
+import java.util.Arrays;
+
+/**
+ * Разбор текста за один проход без создания промежуточных строк.
+ *
+ * Границы абзацев, предложений и слов - это смещения в исходном тексте:
+ *  абзацы разделяются точкой и переводом строки (". \n" или ".\n"),
+ *  предложения - сочетаниями ". ", "? ", "! ",
+ *  слова - пробелами.
+ * Слова приводятся к нижнему регистру и очищаются от знаков пунктуации (кроме .!?$_)
+ * во внутреннем буфере, стоп-слова ищутся по номерам слов (StopWordsLexicon),
+ * а в словарь попадают символы из буфера - строка создается только для нового слова словаря.
+ *
+ * Объект не потокобезопасен - каждому потоку нужен свой экземпляр.
+ */
+class TextTokenizer {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final StopWordsLexicon lexicon;             // null - стоп-слова не удаляются
+
+    private char[] chars = new char[DEFAULT_CAPACITY * 8];      // обработанные слова абзаца подряд
+    private int[] wordStarts = new int[DEFAULT_CAPACITY + 1];   // начало слова в chars (и конец предыдущего)
+    private int[] sourceEnds = new int[DEFAULT_CAPACITY];       // конец слова в исходном тексте
+    private int[] tokenIds = new int[DEFAULT_CAPACITY];         // номер слова в словаре стоп-слов
+    private boolean[] removed = new boolean[DEFAULT_CAPACITY];  // слово - часть стоп-слова
+    private boolean[] sentenceEnds = new boolean[DEFAULT_CAPACITY]; // слово завершает предложение
+    private int[] sentenceBounds = new int[DEFAULT_CAPACITY];   // начало и конец каждого предложения
+
+    /**
+     * @param lexicon словарь стоп-слов, null - стоп-слова не удаляются
+     */
+    TextTokenizer(StopWordsLexicon lexicon) {
+        this.lexicon = lexicon;
+    }
+
+    /**
+     * Разбиение текста на абзацы.
+     * Как и String.split, пустые абзацы в конце текста отбрасываются,
+     * а текст без разделителей считается одним абзацем.
+     *
+     * @param text исходный текст
+     * @return начало и конец каждого абзаца (по два элемента на абзац)
+     */
+    static int[] splitParagraphs(CharSequence text) {
+        int[] bounds = new int[16];
+        int count = 0;
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != '.') {
+                continue;
+            }
+            int next = i + 1;
+            if (next < length && text.charAt(next) == ' ') {
+                next++;
+            }
+            if (next < length && text.charAt(next) == '\n') {
+                if (count == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, count * 2);
+                }
+                bounds[count++] = start;
+                bounds[count++] = i;
+                start = next + 1;
+                i = next;
+            }
+        }
+        if (count + 2 > bounds.length) {
+            bounds = Arrays.copyOf(bounds, count + 2);
+        }
+        boolean split = count > 0;
+        bounds[count++] = start;
+        bounds[count++] = length;
+        while (split && count > 0 && bounds[count - 2] == bounds[count - 1]) {
+            count -= 2;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Разбор абзаца: поиск предложений, удаление стоп-слов и добавление слов в словарь.
+     *
+     * @param text исходный текст
+     * @param start начало абзаца
+     * @param end конец абзаца
+     * @param paragraphNum номер абзаца
+     * @param words словарь, в который добавляются слова абзаца
+     * @return абзац
+     */
+    Paragraph analyse(CharSequence text, int start, int end, int paragraphNum, Dictionary words) {
+        int count = tokenize(text, start, end);
+        markStopWords(count);
+        int sentencesCount = splitSentences(text, start, end, count);
+
+        int sentenceNum = 0;
+        int first = 0;                                          // первое слово предложения
+        for (int i = 0; i < count && sentenceNum < sentencesCount; i++) {
+            if (sentenceEnds[i] || i == count - 1) {
+                addSentenceWords(first, i, paragraphNum, sentenceNum, words);
+                sentenceNum++;
+                first = i + 1;
+            }
+        }
+        return new Paragraph(text, paragraphNum, Arrays.copyOf(sentenceBounds, sentencesCount * 2));
+    }
+
+    /**
+     * Разбиение абзаца на слова (по пробелам, пустые слова сохраняются)
+     * и их обработка: нижний регистр, удаление знаков пунктуации.
+     *
+     * @return количество слов
+     */
+    private int tokenize(CharSequence text, int start, int end) {
+        int count = 0;
+        int length = 0;
+        int tokenStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && text.charAt(i) != ' ') {
+                continue;
+            }
+            ensureTokensCapacity(count + 2);
+            if (chars.length < length + (i - tokenStart)) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + (i - tokenStart)));
+            }
+            wordStarts[count] = length;
+            for (int j = tokenStart; j < i; j++) {
+                char c = text.charAt(j);
+                if (!StopWordsLexicon.isRemovablePunctuation(c)) {
+                    chars[length++] = Character.toLowerCase(c);
+                }
+            }
+            sourceEnds[count] = i;
+            count++;
+            tokenStart = i + 1;
+        }
+        wordStarts[count] = length;
+        return count;
+    }
+
+    /**
+     * Пометка слов, входящих в стоп-слова (и чисел).
+     * Первое и последнее слова абзаца не удаляются никогда:
+     * стоп-слово должно быть окружено пробелами.
+     */
+    private void markStopWords(int count) {
+        Arrays.fill(removed, 0, count, false);
+        if (lexicon == null) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            tokenIds[i] = lexicon.tokenId(chars, wordStarts[i], wordStarts[i + 1] - wordStarts[i]);
+        }
+        int i = 1;
+        while (i < count) {
+            int matched = lexicon.matchLength(tokenIds, i, count - 1);
+            if (matched > 0) {
+                Arrays.fill(removed, i, i + matched, true);
+                i += matched;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Поиск границ предложений абзаца.
+     * Слово завершает предложение, если после удаления знаков пунктуации оканчивается
+     * на '.', '?' или '!' и за ним следует пробел. Границы предложений в исходном тексте
+     * и в обработанных словах поэтому всегда совпадают.
+     * Как и String.split, пустые предложения в конце абзаца отбрасываются.
+     *
+     * @return количество предложений
+     */
+    private int splitSentences(CharSequence text, int start, int end, int count) {
+        int sentencesCount = 0;
+        int sentenceStart = start;
+        boolean split = false;
+        for (int i = 0; i < count; i++) {
+            int length = wordStarts[i + 1] - wordStarts[i];
+            sentenceEnds[i] = i < count - 1 && length > 0 && isSentenceTerminator(chars[wordStarts[i + 1] - 1]);
+            if (sentenceEnds[i]) {
+                int terminator = sourceEnds[i] - 1;             // в исходном тексте после знака могут быть скобки и т.п.
+                while (!isSentenceTerminator(text.charAt(terminator))) {
+                    terminator--;
+                }
+                split = true;
+                sentencesCount = addSentence(sentencesCount, sentenceStart, terminator);
+                sentenceStart = sourceEnds[i] + 1;
+            }
+        }
+        sentencesCount = addSentence(sentencesCount, sentenceStart, end);
+        while (split && sentencesCount > 0
+                && sentenceBounds[sentencesCount * 2 - 2] == sentenceBounds[sentencesCount * 2 - 1]) {
+            sentencesCount--;
+        }
+        return sentencesCount;
+    }
+
+    private int addSentence(int sentencesCount, int start, int end) {
+        if (sentenceBounds.length < sentencesCount * 2 + 2) {
+            sentenceBounds = Arrays.copyOf(sentenceBounds, sentenceBounds.length * 2);
+        }
+        sentenceBounds[sentencesCount * 2] = start;
+        sentenceBounds[sentencesCount * 2 + 1] = end;
+        return sentencesCount + 1;
+    }
+
+    /**
+     * Добавление в словарь оставшихся (не стоп-) слов предложения.
+     * Знак, завершающий предложение, в слово не входит.
+     * Пустые слова в конце предложения не добавляются, а предложение без слов
+     * дает одно пустое слово - так же, как String.split(" ").
+     *
+     * @param first номер первого слова предложения
+     * @param last номер последнего слова предложения
+     */
+    private void addSentenceWords(int first, int last, int paragraphNum, int sentenceNum, Dictionary words) {
+        int kept = 0;
+        int lastNonEmpty = -1;
+        for (int i = first; i <= last; i++) {
+            if (!removed[i]) {
+                kept++;
+                if (wordLength(i) > 0) {
+                    lastNonEmpty = i;
+                }
+            }
+        }
+        if (lastNonEmpty < 0) {
+            if (kept <= 1) {
+                words.addWord(chars, 0, 0, paragraphNum, sentenceNum);
+            }
+            return;
+        }
+        for (int i = first; i <= lastNonEmpty; i++) {
+            if (!removed[i]) {
+                words.addWord(chars, wordStarts[i], wordLength(i), paragraphNum, sentenceNum);
+            }
+        }
+    }
+
+    /**
+     * @return длина обработанного слова без знака, завершающего предложение
+     */
+    private int wordLength(int i) {
+        int length = wordStarts[i + 1] - wordStarts[i];
+        return sentenceEnds[i] ? length - 1 : length;
+    }
+
+    private void ensureTokensCapacity(int capacity) {
+        if (wordStarts.length < capacity) {
+            int newCapacity = Math.max(capacity, wordStarts.length * 2);
+            wordStarts = Arrays.copyOf(wordStarts, newCapacity);
+            sourceEnds = Arrays.copyOf(sourceEnds, newCapacity);
+            tokenIds = Arrays.copyOf(tokenIds, newCapacity);
+            removed = Arrays.copyOf(removed, newCapacity);
+            sentenceEnds = Arrays.copyOf(sentenceEnds, newCapacity);
+        }
+    }
+
+    private static boolean isSentenceTerminator(char c) {
+        return c == '.' || c == '?' || c == '!';
+    }
+}
@@ -1,68 +1,54 @@
 package com.github.zalesskyi.base.summarization;
 
-import com.sun.istack.internal.Nullable;
-
-import java.util.*;
+import java.util.Set;
 
 /**
- * Класс, хранящий информацию о каждом конкретном слове.
+ * Представление слова словаря.
+ * Сами данные слова хранятся в словаре (Dictionary) и доступны по id слова.
  */
 public class Word {
-    private String word;                                       // словоформа
-    private volatile String parentWord = null;                 // родительская словоформа слова
-    private String stem = null;                                // основа слова (получается с помощью алгоритма Портера).
-    private int totalFreq = 0;                                 // общая частота в тексте
-    private Map<Integer, Set<Integer>> wordAddresses;          // Адрес слова. (key: номер абзаца, value: массив номеров предложений)
-    private double importanceCoeff = 0;                        // Коэффициент важности
-    private String previousWord;
+    private final Dictionary dictionary;
+    private final int id;
 
-    Word(String w, int sentenceNum, int paragraphNum, String prevWord) {
-        word = w;
-        previousWord = prevWord;
-        wordAddresses = new HashMap<>();                          // Иннициализация адреса слова
-        totalFreq ++;
-        Set<Integer> sentencesNums = new TreeSet<>();
-        sentencesNums.add(sentenceNum);
-        wordAddresses.put(paragraphNum, sentencesNums);
+    Word(Dictionary dictionary, int id) {
+        this.dictionary = dictionary;
+        this.id = id;
     }
 
     public void setTotalFreq(int totalFreq) {
-        this.totalFreq = totalFreq;
+        dictionary.setTotalFreq(id, totalFreq);
     }
 
     public String getWord() {
-        return word;
+        return dictionary.term(id);
     }
 
     /**
      * @return общая частота слова в тексте
      */
     public int getTotalFreq() {
-        return totalFreq;
+        return dictionary.totalFreq(id);
     }
 
     /**
      * @return основа текущего слова
      */
     public String getStem() {
-        if (stem == null) {
-            stem = new PartOfSpeechHelper().stem(word);
-        }
-        return stem;
+        return dictionary.stem(id);
     }
 
     /**
      * @return Количество абзацев, где астречается это слово.
      */
     public int getParagraphsCount() {
-        return wordAddresses.size();
+        return dictionary.paragraphsCount(id);
     }
 
     /**
      * @return номера абзацев, где встречается слово
      */
     public Set<Integer> getParagraphsNums() {
-        return wordAddresses.keySet();
+        return dictionary.postings(id).paragraphs();
     }
 
     /**
@@ -72,7 +58,7 @@ public class Word {
      * @return номера предложений
      */
     public Set<Integer> getSentencesNums(int paragraphNum) {
-        return wordAddresses.get(paragraphNum);
+        return dictionary.postings(id).sentences(paragraphNum);
     }
 
     /**
@@ -82,14 +68,7 @@ public class Word {
      * @param sn номер предложения
      */
     public void addWordAddress(int pn, int sn) {
-        if (wordAddresses.containsKey(pn)) {
-            wordAddresses.get(pn).add(sn);
-        } else {
-            Set<Integer> sentencesNums = new TreeSet<>();
-            sentencesNums.add(sn);
-            wordAddresses.put(pn, sentencesNums);
-        }
-        totalFreq++;
+        dictionary.addAddress(id, pn, sn);
     }
 
     /**
@@ -99,20 +78,19 @@ public class Word {
      * @return коэффициент важности словоформы
      */
     public double getImportanceCoefficient(int paragraphsCount, int wordsCount) {
-        if (importanceCoeff == 0) {
-            importanceCoeff = (double) (totalFreq * getParagraphsCount())
-                    / (wordsCount * paragraphsCount);
-        }
-        return importanceCoeff;
+        return dictionary.importanceCoefficient(id, paragraphsCount, wordsCount);
+    }
+
+    Postings postings() {
+        return dictionary.postings(id);
     }
 
     @Override
     public String toString() {
-        return "word: \"" + word + "\""
-                + " total frequency: " + totalFreq
+        return "word: \"" + getWord() + "\""
+                + " total frequency: " + getTotalFreq()
                 + " paragraphs count: " + getParagraphsCount()
-                + " wordAddresses: " + wordAddresses
-                + " parent word: " + parentWord
+                + " wordAddresses: " + postings()
                 + " stem: " + getStem() + "\n";
     }
 }
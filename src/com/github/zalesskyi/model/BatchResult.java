@@ -0,0 +1,46 @@
+package com.github.zalesskyi.model;
+
+/**
+ * Результат реферирования одного текста из пакетного запроса (одна строка NDJSON-ответа).
+ */
+public class BatchResult {
+    private int index;
+
+    private String etag;
+
+    private String summary;
+
+    private String error;
+
+    public BatchResult(int index) {
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}